@@ -1,11 +1,13 @@
 package org.gbif.command;
 
 import org.gbif.cli.Command;
+import org.gbif.cli.CommandName;
 
 import com.google.common.base.Optional;
 import org.kohsuke.MetaInfServices;
 
 @MetaInfServices(Command.class)
+@CommandName("hello-world-1")
 public class HelloWorldCommand extends Command {
 
   public HelloWorldCommand() {
@@ -1,15 +1,31 @@
 package org.gbif.cli;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import com.google.common.base.Optional;
 import java.util.ServiceLoader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.core.joran.util.ConfigurationWatchListUtil;
+import com.beust.jcommander.JCommander;
 import com.google.common.collect.Maps;
-import org.gbif.cli.metrics.CommandMetrics;
+import org.gbif.cli.logging.FastLogging;
+import org.gbif.cli.metrics.AdminEndpoints;
+import org.gbif.cli.metrics.CommandMeters;
+import org.gbif.cli.metrics.FlightRecording;
+import org.gbif.cli.metrics.MetricsExporter;
+import org.gbif.cli.metrics.MetricsManager;
+import org.gbif.cli.metrics.StartupProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,7 +38,7 @@ public class Application {
 
   private static final Logger LOG = LoggerFactory.getLogger(Application.class);
 
-  // The supported commands in the order they were added
+  // The commands that were added explicitly, commands registered with the ServiceLoader are only looked up on demand
   private final Map<String, Command> commands = Maps.newTreeMap();
 
   protected Application() {
@@ -46,40 +62,51 @@ public class Application {
   public void initialize() {}
 
   /**
-   * Main entry point. This method searches for other commands on the classpath using the {@link ServiceLoader} and
-   * parses the command line to see which command to run.
+   * Main entry point. This method parses the command line to see which command to run and searches for it on the
+   * classpath using the {@link ServiceLoader} if it hasn't been added explicitly. Only the selected command is
+   * instantiated if it is annotated with {@link CommandName}, all commands are only loaded to print usage instructions.
    *
    * @param arguments command line arguments
    *
    * @return exit code
    */
   public final int run(String... arguments) {
-    configureLogback();
-
-    // Try to load additional commands
-    ServiceLoader<Command> loader = ServiceLoader.load(Command.class);
-    for (Command command : loader) {
-      addCommand(command);
-    }
+    StartupProfiler.reset();
+    StartupProfiler.time("configure-logback", this::configureLogback);
 
     initialize();
 
+    CommandRegistry registry =
+      StartupProfiler.time("command-discovery", () -> new CommandRegistry(ServiceLoader.load(Command.class)));
+
     if (arguments.length == 0) {
-      printUsage();
+      printUsage(allCommands(registry));
       return 1;
     }
 
     // Command has to be the very first argument
     String commandName = arguments[0];
-    if (!commands.containsKey(commandName)) {
+    Command command = commands.get(commandName);
+    if (command == null) {
+      long discoveryStart = System.nanoTime();
+      command = registry.find(commandName);
+      long discoveryNanos = System.nanoTime() - discoveryStart;
+      StartupProfiler.record("command-lookup", discoveryNanos);
+      LOG.debug("Looking up command [{}] took {} ms and instantiated {} of {} discovered commands", commandName,
+                TimeUnit.NANOSECONDS.toMillis(discoveryNanos), registry.getInstantiatedCount(),
+                registry.getProviderCount());
+    }
+
+    if (command == null) {
+      Map<String, Command> availableCommands = allCommands(registry);
       LOG.error("The command name you supplied is not a valid command.");
       LOG.error("You supplied: [{}]", commandName);
-      if (commands.isEmpty()) {
+      if (availableCommands.isEmpty()) {
         LOG.error("There are no valid commands. This is most likely a programming error.");
         LOG.error("Hint: Maybe you forgot to annotate your commands with '@MetaInfServices(Command.class)'?");
       } else {
         LOG.error("The valid commands are:");
-        for (String availableCommand : commands.keySet()) {
+        for (String availableCommand : availableCommands.keySet()) {
           LOG.error(" - {}", availableCommand);
         }
       }
@@ -91,38 +118,151 @@ public class Application {
 
     // Parse the generic parameters to check for metrics configuration
     GenericParameters genericParameters = new GenericParameters();
+    long parseStart = System.nanoTime();
     try {
-      new com.beust.jcommander.JCommander(genericParameters).parse(commandArguments);
-      
-      // Initialize metrics if enabled
-      if (genericParameters.metricsEnabled) {
-        LOG.info("Initializing metrics on port {}", genericParameters.metricsPort);
-        CommandMetrics.initializeMetrics(genericParameters.metricsPort);
-      }
+      JCommander jCommander = new JCommander(genericParameters);
+      jCommander.setAcceptUnknownOptions(true);
+      jCommander.parse(commandArguments);
     } catch (Exception e) {
       // Ignore parsing errors, they will be handled properly later
       LOG.debug("Error parsing metrics parameters", e);
     }
+    StartupProfiler.record("application-parameters", System.nanoTime() - parseStart);
 
-    Command command = commands.get(commandName);
+    // Exporting the metrics when the command finishes requires collecting them as well
+    boolean collectMetrics = genericParameters.collectMetrics();
+    if (collectMetrics) {
+      configureTimers(genericParameters);
+    }
+    if (genericParameters.metricsEnabled) {
+      LOG.info("Initializing metrics on port {}", genericParameters.metricsPort);
+      if (genericParameters.metricsAdmin) {
+        AdminEndpoints.register();
+      }
+      startMetricsServer(genericParameters);
+    }
+
+    // Also export if the JVM exits without returning from the command, e.g. because of System.exit or a signal
+    MetricsExporter exporter = null;
+    Thread exportHook = null;
+    if (genericParameters.metricsTextFile != null || genericParameters.metricsPushUrl != null) {
+      exporter = new MetricsExporter(
+        genericParameters.metricsTextFile == null ? null : Paths.get(genericParameters.metricsTextFile),
+        genericParameters.metricsPushUrl,
+        genericParameters.metricsPushJob == null ? commandName : genericParameters.metricsPushJob);
+      exportHook = exporter.shutdownHook();
+      Runtime.getRuntime().addShutdownHook(exportHook);
+    }
+
+    FlightRecording recording = genericParameters.jfr ? startFlightRecording(commandName, genericParameters) : null;
+
+    Command selectedCommand = command;
     try {
-      if (genericParameters.metricsEnabled) {
-        // Record command execution metrics
-        CommandMetrics.registerCommandExecution(commandName);
-        CommandMetrics.timeCommand(commandName, () -> command.run(commandArguments));
+      if (collectMetrics) {
+        CommandMeters.forCommand(commandName).record(() -> selectedCommand.run(commandArguments));
       } else {
-        command.run(commandArguments);
+        selectedCommand.run(commandArguments);
       }
     } catch (Exception t) {
-      if (genericParameters.metricsEnabled) {
-        CommandMetrics.registerCommandError(commandName);
-      }
       LOG.error("Command threw exception", t);
       return 1;
+    } finally {
+      // Commands based on BaseCommand report before they start their work, this covers all others
+      if (genericParameters.startupReport) {
+        StartupProfiler.report();
+      }
+      if (exporter != null) {
+        exporter.export();
+        removeShutdownHook(exportHook);
+      }
+      if (recording != null) {
+        recording.close();
+      }
+      FastLogging.flush();
     }
     return 0;
   }
 
+  /**
+   * Instantiates all commands found by the {@link ServiceLoader} and merges them with the ones added explicitly, which
+   * take precedence over discovered commands with the same name.
+   *
+   * @return all available commands sorted by name
+   */
+  private Map<String, Command> allCommands(CommandRegistry registry) {
+    Map<String, Command> allCommands = Maps.newTreeMap();
+    for (Command command : registry.findAll()) {
+      allCommands.put(command.getName(), command);
+    }
+    allCommands.putAll(commands);
+    return allCommands;
+  }
+
+  /**
+   * Starts a flight recording which is also written if the JVM exits without returning from the command. With
+   * {@code --metrics-admin} it can be dumped on demand from {@code /jfr} on the metrics server, like the other admin
+   * endpoints it isn't authenticated and makes the process write to disk.
+   *
+   * @return the recording or null if it couldn't be started, which doesn't prevent the command from running
+   */
+  private FlightRecording startFlightRecording(String commandName, GenericParameters parameters) {
+    Path destination = Paths.get(parameters.jfrFile == null ? commandName + ".jfr" : parameters.jfrFile);
+    FlightRecording recording;
+    try {
+      recording = FlightRecording.start(parameters.jfrSettings, destination);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to start flight recording", e);
+      return null;
+    }
+
+    if (parameters.metricsAdmin) {
+      MetricsManager.registerEndpoint("/jfr", exchange -> {
+        try {
+          byte[] response = ("Flight recording dumped to " + recording.dump().toAbsolutePath() + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+          exchange.sendResponseHeaders(200, response.length);
+          exchange.getResponseBody().write(response);
+        } catch (IOException | RuntimeException e) {
+          LOG.warn("Unable to dump flight recording", e);
+          exchange.sendResponseHeaders(500, -1);
+        } finally {
+          exchange.close();
+        }
+      });
+    }
+    return recording;
+  }
+
+  private static void removeShutdownHook(Thread hook) {
+    try {
+      Runtime.getRuntime().removeShutdownHook(hook);
+    } catch (IllegalStateException e) {
+      // The JVM is already shutting down
+    }
+  }
+
+  private void configureTimers(GenericParameters parameters) {
+    MetricsManager.configureTimers(
+      parameters.metricsHistogram,
+      parameters.metricsPercentiles.stream().mapToDouble(Double::doubleValue).toArray(),
+      parameters.metricsSlos.stream().map(Duration::ofMillis).toArray(Duration[]::new),
+      parameters.metricsMinExpected == null ? null : Duration.ofMillis(parameters.metricsMinExpected),
+      parameters.metricsMaxExpected == null ? null : Duration.ofMillis(parameters.metricsMaxExpected));
+  }
+
+  private void startMetricsServer(GenericParameters parameters) {
+    InetSocketAddress address = parameters.metricsBindAddress == null
+      ? new InetSocketAddress(parameters.metricsPort)
+      : new InetSocketAddress(parameters.metricsBindAddress, parameters.metricsPort);
+    // Threads are daemons so they don't keep the JVM alive
+    Executor executor = parameters.metricsVirtualThreads
+      ? Executors.newCachedThreadPool(VirtualThreads.threadFactory("metrics-http", true))
+      : Executors.newFixedThreadPool(Math.max(1, parameters.metricsThreads),
+                                     VirtualThreads.threadFactory("metrics-http", false));
+    MetricsManager.startMetricsServer(address, executor, Duration.ofMillis(parameters.metricsCacheTtl));
+  }
+
   /**
    * This checks if the user has provided a logback configuration file using the usual logback loading mechanism. If he
    * does not logback will already have run {@link ch.qos.logback.classic.BasicConfigurator#configureDefaultContext();}
@@ -140,9 +280,9 @@ public class Application {
     }
   }
 
-  private void printUsage() {
+  private void printUsage(Map<String, Command> availableCommands) {
     LOG.info("Usage");
-    for (Map.Entry<String, Command> commandEntry : commands.entrySet()) {
+    for (Map.Entry<String, Command> commandEntry : availableCommands.entrySet()) {
       LOG.info("");
       LOG.info("Command: {}", commandEntry.getKey());
       LOG.info("---------------------------------------");
@@ -9,27 +9,34 @@ import ch.qos.logback.core.util.StatusPrinter;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.jsonschema.JsonSchema;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import org.gbif.cli.converter.ConverterFactory;
-import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import org.gbif.cli.logging.FastLogging;
+import org.gbif.cli.logging.RateLimitingTurboFilter;
+import org.gbif.cli.metrics.CommandMeters;
+import org.gbif.cli.metrics.CommandPhaseEvent;
+import org.gbif.cli.metrics.StartupProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 import org.yaml.snakeyaml.parser.ParserException;
 
-import jakarta.validation.ConstraintViolation;
-import jakarta.validation.Validation;
-import jakarta.validation.Validator;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This base command can be used for all Commands that want to have their parameters validated and who want to allow
@@ -42,21 +49,26 @@ public abstract class BaseCommand extends Command {
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseCommand.class);
 
-  private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+  // Phase of the actual work, which isn't part of the start up report
+  private static final String RUN_PHASE = "run";
 
-  private static final Validator VALIDATOR =
-      Validation.byDefaultProvider()
-          .configure()
-          .messageInterpolator(new ParameterMessageInterpolator())
-          .buildValidatorFactory()
-          .getValidator();
+  /**
+   * Initialization-on-demand holder so the mapper is only built once configuration files or usage are processed.
+   */
+  private static final class MapperHolder {
+    private static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
 
-  static {
-    MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    static {
+      MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
   }
 
   private final String name;
 
+  // The generic parameters and the remaining command line arguments of the last run, used to reload the configuration
+  private GenericParameters genericParameters;
+  private String[] parameterArguments = new String[0];
+
   protected BaseCommand(String name) {
     super(name);
     this.name = name;
@@ -64,8 +76,9 @@ public abstract class BaseCommand extends Command {
 
   /**
    * The object returned by this method will be populated from the JSON or YAML files specified using the {@code --conf}
-   * command line parameter. The files given in this way will be applied in the order they appeared on the command line
-   * so later files might overwrite earlier ones.
+   * command line parameter. The files given in this way will be deep merged in the order they appeared on the command
+   * line so later files might overwrite values from earlier ones, see {@link ListMergeStrategy} for how lists are
+   * merged.
    * <p/>
    * This can be the same object as the one returned from {@link #getParameterObject()} in which case command line
    * parameters override options from the files.
@@ -88,6 +101,55 @@ public abstract class BaseCommand extends Command {
    */
   protected abstract void doRun();
 
+  /**
+   * Creates a new, empty configuration object of the same kind as {@link #getConfigurationObject()} to be populated by
+   * {@link #reloadConfiguration()}. The default implementation uses the public no-argument constructor of its class.
+   */
+  protected Object newConfigurationObject() {
+    Class<?> type = getConfigurationObject().getClass();
+    try {
+      return type.getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new CommandException("Can't create a new configuration object of type [" + type.getName()
+                                 + "], override newConfigurationObject()", e);
+    }
+  }
+
+  /**
+   * Reads the configuration files this command was started with again into a new configuration object and validates
+   * it the same way the initial configuration was validated. If the configuration and parameter objects are the same
+   * the command line parameters are applied again as well so they still override the files.
+   * <p/>
+   * The object returned by {@link #getConfigurationObject()} is left untouched.
+   *
+   * @return the new configuration object created by {@link #newConfigurationObject()}
+   *
+   * @throws CommandException if a file can't be read or the new configuration is invalid
+   */
+  @SuppressWarnings("ObjectEquality")
+  protected final Object reloadConfiguration() {
+    if (genericParameters == null) {
+      throw new IllegalStateException("The command has not been run yet");
+    }
+
+    Object configuration = newConfigurationObject();
+    processConfigurationFiles(configuration, genericParameters);
+    if (getParameterObject() == getConfigurationObject()) {
+      JCommander jCommander = new JCommander(configuration);
+      jCommander.addConverterFactory(new ConverterFactory());
+      processCommandLineParameters(jCommander, parameterArguments);
+    }
+    validateObject(configuration);
+    return configuration;
+  }
+
+  /**
+   * @return the generic parameters this command was run with or null if it has not been run yet
+   */
+  protected final GenericParameters getGenericParameters() {
+    return genericParameters;
+  }
+
   @Override
   public Optional<String> getUsage() {
     JCommander jCommander = new JCommander();
@@ -101,7 +163,7 @@ public abstract class BaseCommand extends Command {
 
     String sep = System.lineSeparator();
     try {
-      JsonSchema jsonSchema = MAPPER.generateJsonSchema(getConfigurationObject().getClass());
+      JsonSchema jsonSchema = MapperHolder.MAPPER.generateJsonSchema(getConfigurationObject().getClass());
       sb.append(sep);
       sb.append("The configuration file has the following JSON schema but accepts either YAML or JSON:");
       sb.append(sep);
@@ -119,26 +181,58 @@ public abstract class BaseCommand extends Command {
     // First we process the generic parameters which might cause us to bail out early if there is an error or if the
     // user requested us to print usage instructions
     GenericParameters genericParameters = new GenericParameters();
+    this.genericParameters = genericParameters;
     JCommander jCommander = new JCommander(genericParameters);
     jCommander.addConverterFactory(new ConverterFactory());
     jCommander.setAcceptUnknownOptions(true);
-    processCommandLineParameters(jCommander, arguments);
+    timePhase("generic-parameters", () -> processCommandLineParameters(jCommander, arguments));
     if (genericParameters.help) {
       LOG.info(String.valueOf(getUsage().isPresent()));
       return;
     }
 
-    processConfigurationFiles(genericParameters.configurationFiles);
+    timePhase("configuration-files", () -> processConfigurationFiles(getConfigurationObject(), genericParameters));
 
     List<String> remainingArgs = jCommander.getUnknownOptions();
-    jCommander = new JCommander(getParameterObject());
-    jCommander.addConverterFactory(new ConverterFactory());
-    processCommandLineParameters(jCommander, remainingArgs.toArray(new String[remainingArgs.size()]));
+    parameterArguments = remainingArgs.toArray(new String[remainingArgs.size()]);
+    JCommander parameterCommander = new JCommander(getParameterObject());
+    parameterCommander.addConverterFactory(new ConverterFactory());
+    timePhase("command-parameters", () -> processCommandLineParameters(parameterCommander, parameterArguments));
+
+    timePhase("configure-logging", () -> configureLogging(genericParameters));
+    timePhase("validation", this::validateObjects);
+
+    if (genericParameters.startupReport) {
+      StartupProfiler.report();
+    }
 
-    configureLogging(genericParameters);
-    validateObjects();
+    timePhase(RUN_PHASE, this::doRun);
+  }
 
-    doRun();
+  /**
+   * Times a phase of {@link #run(String...)} for the {@link StartupProfiler} and, if metrics are collected, as
+   * {@code cli_command_phase_duration_seconds} tagged with the command and phase so framework overhead can be told
+   * apart from the actual work done in {@link #doRun()}. Every phase is also a {@link CommandPhaseEvent} for flight
+   * recordings.
+   */
+  private void timePhase(String phase, Runnable runnable) {
+    CommandPhaseEvent event = new CommandPhaseEvent();
+    event.command = getName();
+    event.phase = phase;
+    event.begin();
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } finally {
+      event.commit();
+      long nanos = System.nanoTime() - start;
+      if (!RUN_PHASE.equals(phase)) {
+        StartupProfiler.record(phase, nanos);
+      }
+      if (genericParameters.collectMetrics()) {
+        CommandMeters.forCommand(getName()).phase(phase).record(nanos, TimeUnit.NANOSECONDS);
+      }
+    }
   }
 
   private void processCommandLineParameters(JCommander jCommander, String... arguments) {
@@ -151,26 +245,85 @@ public abstract class BaseCommand extends Command {
   }
 
   /**
-   * We take every passed in configuration file, test if it exists and try to write it to the Object provided by {@link
-   * #getConfigurationObject()}. This method prints errors it encounters.
+   * We take every passed in configuration file, test if it exists and try to write it to the given Object, usually the
+   * one provided by {@link #getConfigurationObject()}. This method prints errors it encounters.
+   * <p/>
+   * The files are parsed concurrently and deep merged as described in {@link ConfigurationMerger} before the result is
+   * bound to the configuration object in a single pass. If a cache directory is given the merged configuration is
+   * taken from a binary snapshot as long as none of the files changed.
    *
-   * @param configurationFiles to process
+   * @param configuration to populate
+   * @param parameters    with the files to process, how to merge lists and where to cache snapshots, if at all
    */
-  private void processConfigurationFiles(Iterable<String> configurationFiles) {
-    for (String fileName : configurationFiles) {
+  private void processConfigurationFiles(Object configuration, GenericParameters parameters) {
+    List<File> files = new ArrayList<>();
+    for (String fileName : parameters.configurationFiles) {
       File file = new File(fileName);
       if (!file.exists()) {
         LOG.error("Error reading configuration file [{}] because it does not exist", fileName);
         throw new CommandException("Error reading configuration file [" + fileName + "] because it does not exist");
       }
-      ObjectReader reader = MAPPER.readerForUpdating(getConfigurationObject());
+      files.add(file);
+    }
+    if (files.isEmpty()) {
+      return;
+    }
+
+    ConfigurationCache cache =
+      parameters.configurationCache == null ? null : new ConfigurationCache(parameters.configurationCache);
+    ConfigurationCache.Key key = cache == null ? null : cache.key(files, parameters.listMergeStrategy);
+    JsonNode config = key == null ? null : cache.load(key);
+    if (config == null) {
+      config = ConfigurationMerger.merge(readConfigurationFiles(files), parameters.listMergeStrategy);
+      if (key != null) {
+        cache.store(key, config);
+      }
+    }
+
+    ObjectReader reader = MapperHolder.MAPPER.readerForUpdating(configuration);
+    try {
+      reader.readValue(config);
+    } catch (IOException e) {
+      LOG.error("Error reading configuration files {}", parameters.configurationFiles);
+      throw new CommandException("Error reading configuration files " + parameters.configurationFiles, e);
+    }
+  }
+
+  /**
+   * Parses the given files into trees, concurrently if there is more than one.
+   *
+   * @return the trees in the order of the files
+   */
+  private static List<JsonNode> readConfigurationFiles(List<File> files) {
+    if (files.size() == 1) {
+      return Collections.singletonList(readConfigurationFile(files.get(0)));
+    }
+
+    List<CompletableFuture<JsonNode>> futures = new ArrayList<>();
+    for (File file : files) {
+      futures.add(CompletableFuture.supplyAsync(() -> readConfigurationFile(file)));
+    }
+    List<JsonNode> trees = new ArrayList<>();
+    for (CompletableFuture<JsonNode> future : futures) {
       try {
-        reader.readValue(file);
-      } catch (IOException | ParserException e) {
-        LOG.error("Error reading configuration file [{}]", fileName);
-        throw new CommandException("Error reading configuration file [" + fileName + "]", e);
+        trees.add(future.join());
+      } catch (CompletionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new CommandException(e.getCause());
       }
     }
+    return trees;
+  }
+
+  private static JsonNode readConfigurationFile(File file) {
+    try {
+      JsonNode tree = MapperHolder.MAPPER.readTree(file);
+      // An empty file doesn't change anything
+      return tree == null || tree.isMissingNode() || tree.isNull() ? MapperHolder.MAPPER.createObjectNode() : tree;
+    } catch (IOException | ParserException e) {
+      LOG.error("Error reading configuration file [{}]", file);
+      throw new CommandException("Error reading configuration file [" + file + "]", e);
+    }
   }
 
   /**
@@ -181,12 +334,15 @@ public abstract class BaseCommand extends Command {
    * <em>logback-$commandName.xml</em> and if that too doesn't exist we are using the default.
    * <p/>
    * Additionally we set the ROOT log level to the one that was provided, if any, or to DEBUG if requested otherwise we
-   * leave it at the default.
+   * leave it at the default. Finally the levels are propagated to java.util.logging and, if requested, repeated
+   * messages are limited and all appenders are made asynchronous.
    */
   private void configureLogging(GenericParameters parameters) {
     // Set up JUL logging to go through SLF4J
-    SLF4JBridgeHandler.removeHandlersForRootLogger();
-    SLF4JBridgeHandler.install();
+    if (!parameters.logNoJulBridge) {
+      SLF4JBridgeHandler.removeHandlersForRootLogger();
+      SLF4JBridgeHandler.install();
+    }
 
     URL loggingConfigUrl = null;
 
@@ -233,32 +389,52 @@ public abstract class BaseCommand extends Command {
         root.setLevel(Level.DEBUG);
       }
     }
+
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    if (!parameters.logNoJulBridge) {
+      // Otherwise JUL creates a LogRecord for every statement only for the bridge to discard it
+      FastLogging.propagateLevelsToJul(context);
+    }
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setDedupeWindowMillis(parameters.logDedupeWindow);
+    filter.setAllowedRepetitions(parameters.logDedupeRepetitions);
+    filter.setRateLimit(parameters.logRateLimit);
+    filter.setRateLimitKey(parameters.logRateLimitBy);
+    filter.setDebugSampleRate(parameters.logDebugSampleRate);
+    if (filter.isLimiting()) {
+      FastLogging.limitRate(context, filter);
+    }
+    if (parameters.logAsync) {
+      FastLogging.makeAsync(context, parameters.logAsyncQueueSize, !parameters.logAsyncBlock);
+    }
   }
 
   /**
    * This validates the parameter and configuration object and prints violations if there are some. If the objects are
    * exactly the same it will only be validated once.
+   * <p/>
+   * Classes without any constraint annotations are skipped and the JSR 303 validator is only bootstrapped if needed,
+   * see {@link ValidatedBy} to avoid it altogether.
    */
   @SuppressWarnings("ObjectEquality")
   private void validateObjects() {
-    validateObject(VALIDATOR, getConfigurationObject());
+    validateObject(getConfigurationObject());
     if (getParameterObject() != getConfigurationObject()) {
-      validateObject(VALIDATOR, getParameterObject());
+      validateObject(getParameterObject());
     }
   }
 
   /**
    * Validates a single object, printing any violations it encounters.
    *
-   * @param validator to use
-   * @param object    to validate
+   * @param object to validate
    */
-  private void validateObject(Validator validator, Object object) {
-    Set<ConstraintViolation<Object>> violations = validator.validate(object);
+  private void validateObject(Object object) {
+    List<String> violations = ValidationSupport.validate(object);
     if (!violations.isEmpty()) {
       LOG.error("Failed validation of command line parameters:");
-      for (ConstraintViolation<Object> violation : violations) {
-        LOG.error(" {}: {}", violation.getPropertyPath(), violation.getMessage());
+      for (String violation : violations) {
+        LOG.error(" {}", violation);
       }
       throw new CommandException("Failed validation");
     }
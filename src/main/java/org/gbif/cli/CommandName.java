@@ -0,0 +1,23 @@
+package org.gbif.cli;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the name of a {@link Command} on its class so that the {@link Application} can select it from the
+ * {@link java.util.ServiceLoader} providers without instantiating every other command on the classpath.
+ * <p/>
+ * The value has to be identical to the name the command passes to its constructor. Commands without this annotation
+ * are still discovered, but they need to be instantiated to find out their name.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CommandName {
+
+  /**
+   * @return the name of the command, as passed to {@link Command#Command(String)}
+   */
+  String value();
+}
@@ -0,0 +1,110 @@
+package org.gbif.cli;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily instantiates the {@link Command}s registered using the {@link ServiceLoader} mechanism.
+ * <p/>
+ * Providers are only inspected by type when the registry is created. Commands annotated with {@link CommandName} are
+ * indexed by that name and only instantiated when selected, all others are instantiated one by one until a command
+ * with the requested name is found.
+ */
+class CommandRegistry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CommandRegistry.class);
+
+  private final Map<String, ServiceLoader.Provider<Command>> namedProviders = Maps.newTreeMap();
+  private final List<ServiceLoader.Provider<Command>> unnamedProviders = new ArrayList<>();
+  private final Map<String, Command> instances = Maps.newTreeMap();
+  private final int providerCount;
+
+  CommandRegistry(ServiceLoader<Command> loader) {
+    loader.stream().forEach(provider -> {
+      CommandName commandName = provider.type().getAnnotation(CommandName.class);
+      if (commandName == null) {
+        unnamedProviders.add(provider);
+      } else {
+        namedProviders.put(commandName.value(), provider);
+      }
+    });
+    providerCount = namedProviders.size() + unnamedProviders.size();
+  }
+
+  /**
+   * Finds the command with the given name, instantiating as few commands as possible.
+   *
+   * @param name of the command to find
+   *
+   * @return the command or null if no command with this name is registered
+   */
+  Command find(String name) {
+    if (instances.containsKey(name)) {
+      return instances.get(name);
+    }
+
+    ServiceLoader.Provider<Command> provider = namedProviders.remove(name);
+    if (provider != null) {
+      Command command = instantiate(provider);
+      if (command.getName().equals(name)) {
+        return command;
+      }
+      LOG.warn("Command [{}] is annotated with name [{}] but is called [{}]", provider.type().getName(), name,
+               command.getName());
+    }
+
+    for (Iterator<ServiceLoader.Provider<Command>> iterator = unnamedProviders.iterator(); iterator.hasNext(); ) {
+      Command command = instantiate(iterator.next());
+      iterator.remove();
+      if (command.getName().equals(name)) {
+        return command;
+      }
+    }
+    return instances.get(name);
+  }
+
+  /**
+   * Instantiates all remaining commands, e.g. to print the usage of every available command.
+   *
+   * @return all registered commands
+   */
+  Collection<Command> findAll() {
+    for (ServiceLoader.Provider<Command> provider : namedProviders.values()) {
+      instantiate(provider);
+    }
+    namedProviders.clear();
+    for (ServiceLoader.Provider<Command> provider : unnamedProviders) {
+      instantiate(provider);
+    }
+    unnamedProviders.clear();
+    return instances.values();
+  }
+
+  /**
+   * @return the number of commands that have been instantiated so far
+   */
+  int getInstantiatedCount() {
+    return instances.size();
+  }
+
+  /**
+   * @return the number of commands registered with the {@link ServiceLoader}
+   */
+  int getProviderCount() {
+    return providerCount;
+  }
+
+  private Command instantiate(ServiceLoader.Provider<Command> provider) {
+    Command command = provider.get();
+    instances.put(command.getName(), command);
+    return command;
+  }
+}
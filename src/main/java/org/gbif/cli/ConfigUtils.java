@@ -49,8 +49,8 @@ public class ConfigUtils {
           if (val == null) {
             val = "";
           }
-          // a gbif class? then we need to recursively inspect deeper
-          if (f.getType().getCanonicalName().startsWith("org")) {
+          // a gbif class? then we need to recursively inspect deeper, enums are plain values though
+          if (f.getType().getCanonicalName().startsWith("org") && !f.getType().isEnum()) {
             Properties subProps = toProperties(qualName, val);
             props.putAll(subProps);
           } else if (!Collection.class.isAssignableFrom(f.getType())) {
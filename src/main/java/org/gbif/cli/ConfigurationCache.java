@@ -0,0 +1,163 @@
+package org.gbif.cli;
+
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.io.BaseEncoding;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the merged tree of a set of configuration files as a compact binary Smile snapshot.
+ * <p/>
+ * A snapshot is keyed by the canonical paths, sizes, modification times and SHA-256 hashes of the contents of all
+ * files in the order they are given as well as the way they are merged, so any change to any of the files results in
+ * a cache miss. Problems reading or
+ * writing the cache are logged and otherwise ignored, the caller falls back to parsing the files.
+ */
+class ConfigurationCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurationCache.class);
+
+  private static final int FORMAT_VERSION = 2;
+  private static final String SUFFIX = ".smile";
+
+  private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+  private static final Counter HITS =
+    MetricsManager.createCounter("cli_config_cache_hits_total", "Configuration snapshots reused from the cache");
+  private static final Counter MISSES =
+    MetricsManager.createCounter("cli_config_cache_misses_total", "Configuration snapshots not found in the cache");
+
+  private final Path directory;
+
+  ConfigurationCache(String directory) {
+    this.directory = new File(directory).toPath();
+  }
+
+  /**
+   * Computes the cache key for the current state of the given files.
+   *
+   * @param files        configuration files in the order they are applied
+   * @param listStrategy how the files are merged
+   *
+   * @return the key or null if the files can't be read, in which case the cache should not be used
+   */
+  Key key(List<File> files, ListMergeStrategy listStrategy) {
+    try {
+      MessageDigest pathDigest = MessageDigest.getInstance("SHA-256");
+      MessageDigest stateDigest = MessageDigest.getInstance("SHA-256");
+      for (File file : files) {
+        String path = file.getCanonicalPath();
+        pathDigest.update(path.getBytes(StandardCharsets.UTF_8));
+        pathDigest.update((byte) 0);
+
+        String state = path + '\0' + file.length() + '\0' + file.lastModified() + '\0';
+        stateDigest.update(state.getBytes(StandardCharsets.UTF_8));
+        stateDigest.update(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath())));
+      }
+      stateDigest.update(listStrategy.name().getBytes(StandardCharsets.UTF_8));
+      return new Key(hex(pathDigest.digest()), hex(stateDigest.digest()));
+    } catch (IOException | NoSuchAlgorithmException e) {
+      LOG.warn("Unable to compute configuration cache key, not using the cache", e);
+      return null;
+    }
+  }
+
+  /**
+   * Loads the merged configuration from the snapshot stored for the given key.
+   *
+   * @return the merged tree or null if there is no usable snapshot
+   */
+  JsonNode load(Key key) {
+    Path snapshot = directory.resolve(key.fileName());
+    if (Files.isReadable(snapshot)) {
+      try {
+        JsonNode root = SMILE_MAPPER.readTree(snapshot.toFile());
+        if (root.path("version").asInt() == FORMAT_VERSION && root.has("config")) {
+          HITS.increment();
+          LOG.debug("Using configuration snapshot [{}]", snapshot);
+          return root.get("config");
+        }
+        LOG.debug("Ignoring configuration snapshot [{}] in an unknown format", snapshot);
+      } catch (IOException e) {
+        LOG.warn("Unable to read configuration snapshot [{}], parsing configuration files instead", snapshot, e);
+      }
+    }
+    MISSES.increment();
+    return null;
+  }
+
+  /**
+   * Stores the merged configuration under the given key, replacing snapshots of earlier versions of the same files.
+   */
+  void store(Key key, JsonNode config) {
+    ObjectNode root = SMILE_MAPPER.createObjectNode();
+    root.put("version", FORMAT_VERSION);
+    root.set("config", config);
+
+    try {
+      Files.createDirectories(directory);
+      Path snapshot = directory.resolve(key.fileName());
+      Path tmp = Files.createTempFile(directory, key.files, ".tmp");
+      try {
+        SMILE_MAPPER.writeValue(tmp.toFile(), root);
+        try {
+          Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+      LOG.debug("Stored configuration snapshot [{}]", snapshot);
+
+      try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, key.files + "-*" + SUFFIX)) {
+        for (Path path : stale) {
+          if (!path.equals(snapshot)) {
+            Files.deleteIfExists(path);
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to store configuration snapshot in [{}]", directory, e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    return BaseEncoding.base16().lowerCase().encode(bytes);
+  }
+
+  /**
+   * Identifies a snapshot: which files it was taken from and what state they were in.
+   */
+  static class Key {
+    private final String files;
+    private final String state;
+
+    private Key(String files, String state) {
+      this.files = files;
+      this.state = state;
+    }
+
+    private String fileName() {
+      return files + '-' + state + SUFFIX;
+    }
+  }
+}
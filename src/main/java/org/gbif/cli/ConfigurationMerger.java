@@ -0,0 +1,63 @@
+package org.gbif.cli;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Deep merges the trees of several configuration files into one.
+ * <p/>
+ * Later trees take precedence over earlier ones:
+ * <ul>
+ *   <li>Objects (maps and nested configuration classes) are merged key by key, recursively</li>
+ *   <li>Lists are merged according to the given {@link ListMergeStrategy}</li>
+ *   <li>Any other value, including an explicit {@code null}, replaces the earlier value</li>
+ * </ul>
+ */
+final class ConfigurationMerger {
+
+  private ConfigurationMerger() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * Merges the given trees without modifying any of them.
+   *
+   * @param trees         to merge, in the order of precedence with the last one winning
+   * @param listStrategy  how to merge lists present in more than one tree
+   *
+   * @return the merged tree
+   */
+  static JsonNode merge(List<JsonNode> trees, ListMergeStrategy listStrategy) {
+    JsonNode merged = trees.get(0).deepCopy();
+    for (JsonNode tree : trees.subList(1, trees.size())) {
+      merged = merge(merged, tree, listStrategy);
+    }
+    return merged;
+  }
+
+  private static JsonNode merge(JsonNode target, JsonNode update, ListMergeStrategy listStrategy) {
+    if (target instanceof ObjectNode && update.isObject()) {
+      ObjectNode object = (ObjectNode) target;
+      for (Iterator<Map.Entry<String, JsonNode>> fields = update.fields(); fields.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        JsonNode existing = object.get(field.getKey());
+        object.set(field.getKey(),
+                   existing == null ? field.getValue().deepCopy() : merge(existing, field.getValue(), listStrategy));
+      }
+      return object;
+    }
+
+    if (target instanceof ArrayNode && update.isArray() && listStrategy == ListMergeStrategy.APPEND) {
+      ArrayNode array = (ArrayNode) target;
+      update.forEach(element -> array.add(element.deepCopy()));
+      return array;
+    }
+
+    return update.deepCopy();
+  }
+}
@@ -0,0 +1,25 @@
+package org.gbif.cli;
+
+import java.util.List;
+
+/**
+ * Validates configuration or parameter objects without going through the reflection based JSR 303 bootstrap.
+ * <p/>
+ * Implementations are registered using {@link ValidatedBy} on the class they validate. They can be written by hand or
+ * generated at build time, e.g. by an annotation processor, which keeps validation off the start up path of commands
+ * with large configuration classes. Implementations need a public no-argument constructor.
+ *
+ * @param <T> type of the validated object
+ */
+public interface ConfigurationValidator<T> {
+
+  /**
+   * Validates the given object.
+   *
+   * @param object to validate
+   *
+   * @return a description of every violation found, formatted as {@code "property: message"}, or an empty list if the
+   *         object is valid
+   */
+  List<String> validate(T object);
+}
@@ -0,0 +1,80 @@
+package org.gbif.cli;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Renders the state of the running JVM for diagnosing slow or stuck commands without attaching external tools.
+ */
+public final class Diagnostics {
+
+  private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+  private Diagnostics() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * Renders the stacks of all live threads, including held locks.
+   */
+  public static String threadDump() {
+    return render(ManagementFactory.getThreadMXBean().dumpAllThreads(true, true));
+  }
+
+  /**
+   * Renders the stacks of all threads that are deadlocked waiting for monitors or ownable synchronizers.
+   *
+   * @return the deadlocked threads or null if there are none
+   */
+  public static String deadlocks() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long[] ids = threads.findDeadlockedThreads();
+    if (ids == null) {
+      return null;
+    }
+    return render(threads.getThreadInfo(ids, true, true));
+  }
+
+  /**
+   * Renders the number of instances and bytes used per class on the heap, like {@code jmap -histo:live}. This triggers
+   * a full GC.
+   *
+   * @throws UnsupportedOperationException if the JVM doesn't support diagnostic commands
+   */
+  public static String heapHistogram() {
+    try {
+      return (String) ManagementFactory.getPlatformMBeanServer()
+        .invoke(new ObjectName(DIAGNOSTIC_COMMAND), "gcClassHistogram", new Object[] {new String[0]},
+                new String[] {String[].class.getName()});
+    } catch (JMException e) {
+      throw new UnsupportedOperationException("Heap histograms aren't supported by this JVM", e);
+    }
+  }
+
+  private static String render(ThreadInfo[] infos) {
+    StringBuilder sb = new StringBuilder();
+    for (ThreadInfo info : infos) {
+      if (info == null) {
+        // The thread terminated in the meantime
+        continue;
+      }
+      sb.append('"').append(info.getThreadName()).append("\" ").append(info.getThreadState());
+      if (info.getLockName() != null) {
+        sb.append(" on ").append(info.getLockName());
+      }
+      if (info.getLockOwnerName() != null) {
+        sb.append(" owned by \"").append(info.getLockOwnerName()).append('"');
+      }
+      sb.append(System.lineSeparator());
+      for (StackTraceElement element : info.getStackTrace()) {
+        sb.append("\tat ").append(element).append(System.lineSeparator());
+      }
+      sb.append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+}
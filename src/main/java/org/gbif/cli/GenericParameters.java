@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.StringJoiner;
 
+import org.gbif.cli.logging.RateLimitingTurboFilter;
+
 public class GenericParameters {
 
   @Parameter(
@@ -15,10 +17,42 @@ public class GenericParameters {
 
   @Parameter(
     names = {"-c", "--conf"},
-    description = "Configuration files to use. Later ones override earlier ones",
+    description = "Configuration files to use. They are deep merged with later ones overriding earlier ones",
     variableArity = true)
   public List<String> configurationFiles = new ArrayList<>();
 
+  @Parameter(
+    names = "--conf-list-merge",
+    description = "How lists given in more than one configuration file are merged, REPLACE or APPEND")
+  public ListMergeStrategy listMergeStrategy = ListMergeStrategy.REPLACE;
+
+  @Parameter(
+    names = "--conf-cache",
+    description = "Directory to cache a binary snapshot of the parsed configuration files in. The snapshot is reused "
+                  + "as long as none of the files changed")
+  public String configurationCache;
+
+  @Parameter(
+    names = "--conf-watch",
+    description = "Reloads the configuration files of a service when they change and passes the new configuration to "
+                  + "the running service")
+  public boolean watchConfiguration;
+
+  @Parameter(
+    names = "--shutdown-timeout",
+    description = "Seconds a service gets to drain its work and stop on shutdown before it is terminated forcibly")
+  public int shutdownTimeout = 30;
+
+  @Parameter(
+    names = "--warmup-seconds",
+    description = "Maximum seconds a service supporting it gets to warm up before it reports ready, 0 skips the warmup")
+  public int warmupSeconds = 30;
+
+  @Parameter(
+    names = "--warmup-iterations",
+    description = "Maximum iterations a service supporting it runs to warm up, 0 for no limit")
+  public long warmupIterations;
+
   @Parameter(
     names = "--log-config",
     description = "Name of a logback XML configuration file to use")
@@ -29,6 +63,52 @@ public class GenericParameters {
     description = "Name of the log level to use for the root logger, if an invalid name is given DEBUG will be used")
   public String logLevel;
 
+  @Parameter(
+    names = "--log-async",
+    description = "Writes log events asynchronously from a bounded queue, so logging threads don't wait for appenders")
+  public boolean logAsync;
+
+  @Parameter(
+    names = "--log-async-queue-size",
+    description = "Maximum number of log events queued per appender with --log-async. Events below WARN are dropped "
+                  + "once the queue is 80% full")
+  public int logAsyncQueueSize = 8192;
+
+  @Parameter(
+    names = "--log-async-block",
+    description = "Blocks logging threads while the queue is full instead of dropping events with --log-async")
+  public boolean logAsyncBlock;
+
+  @Parameter(
+    names = "--log-no-jul-bridge",
+    description = "Doesn't route java.util.logging through SLF4J")
+  public boolean logNoJulBridge;
+
+  @Parameter(
+    names = "--log-dedupe-window",
+    description = "Window in milliseconds in which repetitions of a message are limited, 0 doesn't limit them")
+  public long logDedupeWindow;
+
+  @Parameter(
+    names = "--log-dedupe-repetitions",
+    description = "How often the same message of a logger is logged per --log-dedupe-window")
+  public int logDedupeRepetitions = 5;
+
+  @Parameter(
+    names = "--log-rate-limit",
+    description = "Maximum log events per second, 0 for no limit")
+  public int logRateLimit;
+
+  @Parameter(
+    names = "--log-rate-limit-by",
+    description = "Whether --log-rate-limit applies per LOGGER or per LEVEL")
+  public RateLimitingTurboFilter.Key logRateLimitBy = RateLimitingTurboFilter.Key.LOGGER;
+
+  @Parameter(
+    names = "--log-debug-sample-rate",
+    description = "Fraction of DEBUG and TRACE events that are logged, between 0 and 1")
+  public double logDebugSampleRate = 1;
+
   @Parameter(
     names = {"-v", "--verbose"},
     description = "Enables DEBUG logging. This overrides any --log-level setting")
@@ -44,16 +124,146 @@ public class GenericParameters {
     description = "Port to expose Prometheus metrics on")
   public int metricsPort = 9090;
 
+  @Parameter(
+    names = "--metrics-textfile",
+    description = "File the metrics are written to when the command finishes, e.g. for the textfile collector of the "
+                  + "node_exporter. Enables metrics collection")
+  public String metricsTextFile;
+
+  @Parameter(
+    names = "--metrics-push-url",
+    description = "Base URL of a Pushgateway the metrics are pushed to when the command finishes. Enables metrics "
+                  + "collection")
+  public String metricsPushUrl;
+
+  @Parameter(
+    names = "--metrics-push-job",
+    description = "Job name the pushed metrics are grouped by, the command name by default")
+  public String metricsPushJob;
+
+  @Parameter(
+    names = "--metrics-bind-address",
+    description = "Address to expose Prometheus metrics on, all interfaces by default")
+  public String metricsBindAddress;
+
+  @Parameter(
+    names = "--metrics-threads",
+    description = "Number of threads serving Prometheus scrapes")
+  public int metricsThreads = 2;
+
+  @Parameter(
+    names = "--metrics-virtual-threads",
+    description = "Serves every Prometheus scrape on its own virtual thread if the JVM supports them")
+  public boolean metricsVirtualThreads;
+
+  @Parameter(
+    names = "--metrics-cache-ttl",
+    description = "Milliseconds a rendered Prometheus scrape is reused for further scrapes, 0 renders every scrape")
+  public long metricsCacheTtl;
+
+  @Parameter(
+    names = "--metrics-admin",
+    description = "Serves /admin endpoints on the metrics server to change log levels and to get thread dumps, heap "
+                  + "histograms and deadlocks. They aren't authenticated, only enable them on trusted networks")
+  public boolean metricsAdmin;
+
+  @Parameter(
+    names = "--metrics-histogram",
+    description = "Publishes percentile histograms for command timers so percentiles can be computed in Prometheus")
+  public boolean metricsHistogram;
+
+  @Parameter(
+    names = "--metrics-percentiles",
+    description = "Comma separated percentiles computed in process for command timers, e.g. 0.95,0.99")
+  public List<Double> metricsPercentiles = new ArrayList<>();
+
+  @Parameter(
+    names = "--metrics-slo",
+    description = "Comma separated service level objectives in milliseconds added as histogram buckets to command "
+                  + "timers")
+  public List<Long> metricsSlos = new ArrayList<>();
+
+  @Parameter(
+    names = "--metrics-min-expected",
+    description = "Lower bound in milliseconds of the histogram buckets of command timers")
+  public Long metricsMinExpected;
+
+  @Parameter(
+    names = "--metrics-max-expected",
+    description = "Upper bound in milliseconds of the histogram buckets of command timers")
+  public Long metricsMaxExpected;
+
+  @Parameter(
+    names = "--startup-report",
+    description = "Prints how long each start up phase took before the command starts its work and publishes the "
+                  + "timings as metrics")
+  public boolean startupReport;
+
+  @Parameter(
+    names = "--jfr",
+    description = "Records the command with the Java Flight Recorder. The recording is written on exit and can be "
+                  + "dumped on demand from /jfr on the metrics server with --metrics-admin")
+  public boolean jfr;
+
+  @Parameter(
+    names = "--jfr-file",
+    description = "File the flight recording is written to, <command>.jfr by default")
+  public String jfrFile;
+
+  @Parameter(
+    names = "--jfr-settings",
+    description = "JFR settings to record with, default, profile or the path to a .jfc file")
+  public String jfrSettings = "default";
+
+  /**
+   * @return true if metrics are collected, because they are exposed over HTTP or exported when the command finishes
+   */
+  public boolean collectMetrics() {
+    return metricsEnabled || metricsTextFile != null || metricsPushUrl != null;
+  }
+
   @Override
   public String toString() {
     return new StringJoiner(", ", GenericParameters.class.getSimpleName() + "[", "]")
         .add("help=" + help)
         .add("configurationFiles=" + configurationFiles)
+        .add("listMergeStrategy=" + listMergeStrategy)
+        .add("configurationCache='" + configurationCache + "'")
+        .add("watchConfiguration=" + watchConfiguration)
+        .add("shutdownTimeout=" + shutdownTimeout)
+        .add("warmupSeconds=" + warmupSeconds)
+        .add("warmupIterations=" + warmupIterations)
         .add("logbackConfig='" + logbackConfig + "'")
         .add("logLevel='" + logLevel + "'")
+        .add("logAsync=" + logAsync)
+        .add("logAsyncQueueSize=" + logAsyncQueueSize)
+        .add("logAsyncBlock=" + logAsyncBlock)
+        .add("logNoJulBridge=" + logNoJulBridge)
+        .add("logDedupeWindow=" + logDedupeWindow)
+        .add("logDedupeRepetitions=" + logDedupeRepetitions)
+        .add("logRateLimit=" + logRateLimit)
+        .add("logRateLimitBy=" + logRateLimitBy)
+        .add("logDebugSampleRate=" + logDebugSampleRate)
         .add("verbose=" + verbose)
         .add("metricsEnabled=" + metricsEnabled)
         .add("metricsPort=" + metricsPort)
+        .add("metricsTextFile='" + metricsTextFile + "'")
+        .add("metricsPushUrl='" + metricsPushUrl + "'")
+        .add("metricsPushJob='" + metricsPushJob + "'")
+        .add("metricsBindAddress='" + metricsBindAddress + "'")
+        .add("metricsThreads=" + metricsThreads)
+        .add("metricsVirtualThreads=" + metricsVirtualThreads)
+        .add("metricsCacheTtl=" + metricsCacheTtl)
+        .add("metricsAdmin=" + metricsAdmin)
+        .add("metricsHistogram=" + metricsHistogram)
+        .add("metricsPercentiles=" + metricsPercentiles)
+        .add("metricsSlos=" + metricsSlos)
+        .add("metricsMinExpected=" + metricsMinExpected)
+        .add("metricsMaxExpected=" + metricsMaxExpected)
+        .add("startupReport=" + startupReport)
+        .add("jfr=" + jfr)
+        .add("jfrFile='" + jfrFile + "'")
+        .add("jfrSettings='" + jfrSettings + "'")
         .toString();
   }
 }
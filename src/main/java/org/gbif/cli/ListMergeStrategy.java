@@ -0,0 +1,17 @@
+package org.gbif.cli;
+
+/**
+ * How lists are merged when the same list is given in more than one configuration file.
+ */
+public enum ListMergeStrategy {
+
+  /**
+   * The list from the later file replaces the earlier one.
+   */
+  REPLACE,
+
+  /**
+   * The elements of the list from the later file are appended to the earlier one.
+   */
+  APPEND
+}
@@ -0,0 +1,20 @@
+package org.gbif.cli;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * To be used on configuration or parameter classes to validate them with a {@link ConfigurationValidator} instead of
+ * the default JSR 303 validator.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ValidatedBy {
+
+  /**
+   * @return the validator to use for the annotated class
+   */
+  Class<? extends ConfigurationValidator<?>> value();
+}
@@ -0,0 +1,166 @@
+package org.gbif.cli;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Valid;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+
+/**
+ * Validates configuration and parameter objects, picking the cheapest way to do so once per class.
+ * <p/>
+ * Classes annotated with {@link ValidatedBy} use their own validator, classes without any constraint annotations are
+ * not validated at all and only the remaining ones go through the JSR 303 validator, which is bootstrapped the first
+ * time it is actually needed.
+ */
+final class ValidationSupport {
+
+  private static final ConfigurationValidator<Object> NO_OP = object -> Collections.emptyList();
+
+  private static final ConfigurationValidator<Object> BEAN_VALIDATOR = object -> {
+    List<String> messages = new ArrayList<>();
+    for (ConstraintViolation<Object> violation : ValidatorHolder.VALIDATOR.validate(object)) {
+      messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+    }
+    return messages;
+  };
+
+  private static final ClassValue<ConfigurationValidator<Object>> VALIDATORS =
+    new ClassValue<ConfigurationValidator<Object>>() {
+      @Override
+      protected ConfigurationValidator<Object> computeValue(Class<?> type) {
+        ValidatedBy validatedBy = type.getAnnotation(ValidatedBy.class);
+        if (validatedBy != null) {
+          return newValidator(validatedBy.value());
+        }
+        return isConstrained(type) ? BEAN_VALIDATOR : NO_OP;
+      }
+    };
+
+  /**
+   * Initialization-on-demand holder so the validator factory is only built once an object with constraints is
+   * validated.
+   */
+  private static final class ValidatorHolder {
+    private static final Validator VALIDATOR =
+      Validation.byDefaultProvider()
+        .configure()
+        .messageInterpolator(new ParameterMessageInterpolator())
+        .buildValidatorFactory()
+        .getValidator();
+  }
+
+  private ValidationSupport() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * Validates a single object.
+   *
+   * @param object to validate
+   *
+   * @return a description of every violation found, empty if the object is valid
+   */
+  static List<String> validate(Object object) {
+    return VALIDATORS.get(object.getClass()).validate(object);
+  }
+
+  /**
+   * Checks whether a class or any of its super types carries constraint annotations on the class, its fields or its
+   * methods, including constraints on type arguments and cascaded validation using {@link Valid}.
+   *
+   * @param type to inspect
+   *
+   * @return true if objects of this type need to go through the JSR 303 validator
+   */
+  static boolean isConstrained(Class<?> type) {
+    for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+      if (isDeclaringConstraints(current)) {
+        return true;
+      }
+      for (Class<?> iface : current.getInterfaces()) {
+        if (isConstrained(iface)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isDeclaringConstraints(Class<?> type) {
+    if (hasConstraint(type.getDeclaredAnnotations())) {
+      return true;
+    }
+    for (Field field : type.getDeclaredFields()) {
+      if (hasConstraint(field.getDeclaredAnnotations()) || hasConstraint(field.getAnnotatedType())) {
+        return true;
+      }
+    }
+    for (Method method : type.getDeclaredMethods()) {
+      if (hasConstraint(method.getDeclaredAnnotations()) || hasConstraint(method.getAnnotatedReturnType())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasConstraint(AnnotatedType annotatedType) {
+    if (hasConstraint(annotatedType.getDeclaredAnnotations())) {
+      return true;
+    }
+    if (annotatedType instanceof AnnotatedParameterizedType) {
+      for (AnnotatedType argument : ((AnnotatedParameterizedType) annotatedType).getAnnotatedActualTypeArguments()) {
+        if (hasConstraint(argument)) {
+          return true;
+        }
+      }
+    } else if (annotatedType instanceof AnnotatedArrayType) {
+      return hasConstraint(((AnnotatedArrayType) annotatedType).getAnnotatedGenericComponentType());
+    }
+    return false;
+  }
+
+  private static boolean hasConstraint(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      if (isConstraint(annotation.annotationType())) {
+        return true;
+      }
+      // Repeated constraints are wrapped in a container annotation like @NotNull.List
+      try {
+        Method value = annotation.annotationType().getDeclaredMethod("value");
+        Class<?> valueType = value.getReturnType();
+        if (valueType.isArray() && valueType.getComponentType().isAnnotation()
+            && isConstraint(valueType.getComponentType())) {
+          return true;
+        }
+      } catch (NoSuchMethodException ignored) {
+        // not a container annotation
+      }
+    }
+    return false;
+  }
+
+  private static boolean isConstraint(Class<?> annotationType) {
+    return annotationType == Valid.class || annotationType.isAnnotationPresent(Constraint.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ConfigurationValidator<Object> newValidator(Class<? extends ConfigurationValidator<?>> type) {
+    try {
+      return (ConfigurationValidator<Object>) type.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new CommandException("Could not instantiate validator [" + type.getName() + "]", e);
+    }
+  }
+}
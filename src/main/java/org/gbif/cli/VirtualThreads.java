@@ -0,0 +1,67 @@
+package org.gbif.cli;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates thread factories that use virtual threads when the JVM supports them.
+ * <p/>
+ * This library targets Java 17 where virtual threads don't exist, so they are looked up reflectively. On older JVMs
+ * daemon platform threads are used instead and a warning is logged once.
+ */
+public final class VirtualThreads {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+  private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+  private VirtualThreads() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * @return true if the running JVM supports virtual threads
+   */
+  public static boolean isSupported() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates a factory for threads named {@code prefix-0}, {@code prefix-1} and so on.
+   *
+   * @param prefix  of the thread names
+   * @param virtual whether virtual threads should be used if supported, otherwise daemon platform threads are created
+   *
+   * @return the thread factory
+   */
+  public static ThreadFactory threadFactory(String prefix, boolean virtual) {
+    if (virtual) {
+      try {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+        return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+      } catch (ReflectiveOperationException e) {
+        if (WARNED.compareAndSet(false, true)) {
+          LOG.warn("Virtual threads are not supported by this JVM, using platform threads instead");
+        }
+      }
+    }
+
+    AtomicLong counter = new AtomicLong();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
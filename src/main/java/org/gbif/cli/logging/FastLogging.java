@@ -0,0 +1,134 @@
+package org.gbif.cli.logging;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.jul.LevelChangePropagator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Helpers to reduce the cost of logging in services logging a lot.
+ */
+public final class FastLogging {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(FastLogging.class);
+
+  // How long queued events are given to be written when the JVM exits
+  private static final long EXIT_FLUSH_MILLIS = 1000;
+
+  private static final List<MeteredAsyncAppender> ASYNC_APPENDERS = new ArrayList<>();
+
+  private FastLogging() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * Propagates logback levels to java.util.logging, so log statements disabled in logback are rejected by JUL before a
+   * LogRecord is created and handed to the SLF4J bridge. Has to be installed again after the context is reset.
+   *
+   * @param context to propagate the levels of
+   */
+  public static void propagateLevelsToJul(LoggerContext context) {
+    for (Object listener : context.getCopyOfListenerList()) {
+      if (listener instanceof LevelChangePropagator) {
+        return;
+      }
+    }
+    LevelChangePropagator propagator = new LevelChangePropagator();
+    propagator.setContext(context);
+    propagator.setResetJUL(true);
+    propagator.start();
+    context.addListener(propagator);
+  }
+
+  /**
+   * Installs a rate limiting filter, replacing one installed before. Has to be installed again after the context is
+   * reset.
+   *
+   * @param context to install the filter in
+   * @param filter  to install, started if it isn't yet
+   *
+   * @throws IllegalArgumentException if the filter is configured with invalid limits
+   */
+  public static void limitRate(LoggerContext context, RateLimitingTurboFilter filter) {
+    context.getTurboFilterList().removeIf(installed -> installed instanceof RateLimitingTurboFilter);
+    filter.setContext(context);
+    if (!filter.isStarted()) {
+      filter.start();
+    }
+    checkArgument(filter.isStarted(), "Invalid limits for the rate limiting filter");
+    context.addTurboFilter(filter);
+  }
+
+  /**
+   * Wraps all appenders attached to loggers of the context, which aren't asynchronous already, in a
+   * {@link MeteredAsyncAppender} so logging threads only enqueue events. An appender attached to several loggers gets a
+   * single wrapper shared by all of them, so its events are still written by one worker in order.
+   * <p/>
+   * The workers are daemon threads, events still queued when the JVM exits are lost unless {@link #flush()} is called
+   * once everything worth logging has been logged.
+   *
+   * @param context    to make asynchronous
+   * @param queueSize  maximum number of queued events per appender
+   * @param neverBlock true to drop events if the queue is full, false to block the logging thread until there's room
+   */
+  public static synchronized void makeAsync(LoggerContext context, int queueSize, boolean neverBlock) {
+    // Appenders of earlier configurations have been stopped when the context was reset
+    ASYNC_APPENDERS.removeIf(appender -> !appender.isStarted());
+    Map<Appender<ILoggingEvent>, MeteredAsyncAppender> wrappers = new IdentityHashMap<>();
+    for (Logger logger : context.getLoggerList()) {
+      List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+      for (Iterator<Appender<ILoggingEvent>> it = logger.iteratorForAppenders(); it.hasNext(); ) {
+        appenders.add(it.next());
+      }
+
+      for (Appender<ILoggingEvent> appender : appenders) {
+        if (appender instanceof AsyncAppenderBase) {
+          continue;
+        }
+        MeteredAsyncAppender async = wrappers.get(appender);
+        if (async == null) {
+          async = new MeteredAsyncAppender();
+          async.setContext(context);
+          async.setName("async-" + appender.getName());
+          async.setQueueSize(queueSize);
+          async.setNeverBlock(neverBlock);
+          async.addAppender(appender);
+          async.start();
+          wrappers.put(appender, async);
+          ASYNC_APPENDERS.add(async);
+        }
+
+        logger.detachAppender(appender);
+        logger.addAppender(async);
+        LOG.debug("Logging to appender [{}] of logger [{}] asynchronously", appender.getName(), logger.getName());
+      }
+    }
+  }
+
+  /**
+   * Waits briefly for the events queued by asynchronous appenders to be written. Called when the command returned and
+   * at the end of the shutdown of a service, so the last events before the JVM exits aren't lost.
+   */
+  public static synchronized void flush() {
+    try {
+      for (MeteredAsyncAppender appender : ASYNC_APPENDERS) {
+        if (appender.isStarted()) {
+          appender.awaitEmpty(EXIT_FLUSH_MILLIS);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.gbif.cli.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import org.gbif.cli.metrics.MetricsManager;
+
+/**
+ * An {@link AsyncAppender} publishing how many events it dropped and how many are waiting in its queue.
+ * <p/>
+ * Events are dropped by the {@link AsyncAppender} if they are below WARN while its queue is nearly full, as defined by
+ * the discarding threshold, or if the queue is full and it is configured to never block. The counts are exposed as
+ * {@code cli_log_events_dropped_total} and {@code cli_log_queue_depth} tagged with the name of the appender. Drops
+ * are counted right before handing the event over, so they are exact for a single logging thread and a close
+ * approximation otherwise.
+ */
+public class MeteredAsyncAppender extends AsyncAppender {
+
+  private Counter dropped;
+
+  @Override
+  public void start() {
+    if (isStarted()) {
+      return;
+    }
+    dropped = Counter.builder("cli_log_events_dropped_total")
+      .description("Log events dropped because the queue of the asynchronous appender was full")
+      .tag("appender", getName())
+      .register(MetricsManager.REGISTRY);
+    // Replaces the gauge of an appender with the same name from before the logging was reconfigured
+    Gauge previous = MetricsManager.REGISTRY.find("cli_log_queue_depth").tag("appender", getName()).gauge();
+    if (previous != null) {
+      MetricsManager.REGISTRY.remove(previous);
+    }
+    Gauge.builder("cli_log_queue_depth", this, MeteredAsyncAppender::getNumberOfElementsInQueue)
+      .description("Log events waiting in the queue of the asynchronous appender")
+      .tag("appender", getName())
+      .register(MetricsManager.REGISTRY);
+    super.start();
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    int remaining = getRemainingCapacity();
+    if ((remaining < getDiscardingThreshold() && isDiscardable(event)) || (isNeverBlock() && remaining == 0)) {
+      dropped.increment();
+    }
+    super.append(event);
+  }
+
+  /**
+   * Waits for the queue to be empty, e.g. before the JVM exits.
+   *
+   * @param timeoutMillis maximum time to wait
+   *
+   * @return true if the queue is empty
+   */
+  public boolean awaitEmpty(long timeoutMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+    while (getNumberOfElementsInQueue() > 0) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      Thread.sleep(10);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,293 @@
+package org.gbif.cli.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import io.micrometer.core.instrument.Counter;
+import org.gbif.cli.metrics.MetricsManager;
+import org.slf4j.Marker;
+
+/**
+ * Protects the log from statements logged in hot loops, e.g. the same error for every message while a downstream
+ * service is unavailable.
+ * <p/>
+ * Three independent limits can be enabled, each of them only considers events that are enabled for their logger:
+ * <ul>
+ *   <li>Duplicates: a message format logged by the same logger is only let through a number of times per window.</li>
+ *   <li>Rate limit: at most a number of events per second are let through per logger or per level, with bursts of up
+ *   to one second's worth.</li>
+ *   <li>Sampling: only a fraction of DEBUG and TRACE events is let through.</li>
+ * </ul>
+ * Suppressed events are counted in {@code cli_log_suppressed_total} tagged with the reason, {@code duplicate},
+ * {@code rate_limit} or {@code sampled}.
+ * <p/>
+ * The state kept per message and per key is bounded. Once the bound is reached, state which no longer limits anything,
+ * i.e. expired windows and refilled buckets, is dropped. Events which can't be tracked until then are let through.
+ */
+public class RateLimitingTurboFilter extends TurboFilter {
+
+  /**
+   * What events are rate limited together.
+   */
+  public enum Key {
+    LOGGER, LEVEL
+  }
+
+  // Bounds the memory used by many distinct messages or loggers
+  private static final int MAX_KEYS = 10_000;
+
+  private long dedupeWindowMillis;
+  private int allowedRepetitions = 5;
+  private int rateLimit;
+  private Key rateLimitKey = Key.LOGGER;
+  private double debugSampleRate = 1;
+
+  private int maxKeys = MAX_KEYS;
+
+  // Keyed by logger and format, both are stable instances so looking them up doesn't allocate
+  private final Map<Logger, Map<String, Window>> windows = new ConcurrentHashMap<>();
+  private final AtomicInteger windowCount = new AtomicInteger();
+  private final AtomicLong windowsSwept = new AtomicLong();
+  // Keyed by logger or level
+  private final Map<Object, Bucket> buckets = new ConcurrentHashMap<>();
+  private final AtomicLong bucketsSwept = new AtomicLong();
+
+  private Counter duplicates;
+  private Counter rateLimited;
+  private Counter sampled;
+
+  /**
+   * @param dedupeWindowMillis length of the window in which duplicates are counted, 0 to let all duplicates through
+   */
+  public void setDedupeWindowMillis(long dedupeWindowMillis) {
+    this.dedupeWindowMillis = dedupeWindowMillis;
+  }
+
+  /**
+   * @param allowedRepetitions how often a message is let through per window
+   */
+  public void setAllowedRepetitions(int allowedRepetitions) {
+    this.allowedRepetitions = allowedRepetitions;
+  }
+
+  /**
+   * @param rateLimit maximum events per second, 0 for no limit
+   */
+  public void setRateLimit(int rateLimit) {
+    this.rateLimit = rateLimit;
+  }
+
+  public void setRateLimitKey(Key rateLimitKey) {
+    this.rateLimitKey = rateLimitKey;
+  }
+
+  /**
+   * @param debugSampleRate fraction of DEBUG and TRACE events let through, between 0 and 1
+   */
+  public void setDebugSampleRate(double debugSampleRate) {
+    this.debugSampleRate = debugSampleRate;
+  }
+
+  /**
+   * @param maxKeys maximum number of messages and of rate limit keys tracked
+   */
+  void setMaxKeys(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * @return true if any of the limits is enabled
+   */
+  public boolean isLimiting() {
+    return dedupeWindowMillis > 0 || rateLimit > 0 || debugSampleRate < 1;
+  }
+
+  @Override
+  public void start() {
+    if (allowedRepetitions < 1) {
+      addError("allowedRepetitions has to be at least 1");
+      return;
+    }
+    if (debugSampleRate < 0 || debugSampleRate > 1) {
+      addError("debugSampleRate has to be between 0 and 1");
+      return;
+    }
+    duplicates = suppressedCounter("duplicate");
+    rateLimited = suppressedCounter("rate_limit");
+    sampled = suppressedCounter("sampled");
+    windowsSwept.set(System.nanoTime());
+    bucketsSwept.set(System.nanoTime());
+    super.start();
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+    // Calls to isXxxEnabled come without a format, disabled events would be dropped anyway
+    if (!isStarted() || format == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+      return FilterReply.NEUTRAL;
+    }
+
+    if (debugSampleRate < 1 && level.toInt() <= Level.DEBUG_INT
+        && ThreadLocalRandom.current().nextDouble() >= debugSampleRate) {
+      sampled.increment();
+      return FilterReply.DENY;
+    }
+
+    if (dedupeWindowMillis > 0) {
+      Window window = windowFor(logger, format);
+      if (window != null && !window.tryAcquire()) {
+        duplicates.increment();
+        return FilterReply.DENY;
+      }
+    }
+
+    if (rateLimit > 0) {
+      Bucket bucket = bucketFor(rateLimitKey == Key.LOGGER ? logger : level);
+      if (bucket != null && !bucket.tryAcquire()) {
+        rateLimited.increment();
+        return FilterReply.DENY;
+      }
+    }
+    return FilterReply.NEUTRAL;
+  }
+
+  /**
+   * @return the window of the message, null if no more messages can be tracked
+   */
+  private Window windowFor(Logger logger, String format) {
+    Map<String, Window> formats = windows.get(logger);
+    if (formats == null) {
+      formats = windows.computeIfAbsent(logger, l -> new ConcurrentHashMap<>());
+    }
+    Window window = formats.get(format);
+    if (window == null) {
+      if (windowCount.get() >= maxKeys && !evictExpiredWindows()) {
+        return null;
+      }
+      window = new Window();
+      Window existing = formats.putIfAbsent(format, window);
+      if (existing != null) {
+        return existing;
+      }
+      windowCount.incrementAndGet();
+    }
+    return window;
+  }
+
+  /**
+   * Drops the windows which expired, at most once per window length. Loggers are kept, a context never drops them
+   * either.
+   *
+   * @return true if there's room for another window
+   */
+  private boolean evictExpiredWindows() {
+    long now = System.nanoTime();
+    long last = windowsSwept.get();
+    if (now - last < TimeUnit.MILLISECONDS.toNanos(dedupeWindowMillis) || !windowsSwept.compareAndSet(last, now)) {
+      return false;
+    }
+    int count = 0;
+    for (Map<String, Window> formats : windows.values()) {
+      formats.values().removeIf(window -> window.isExpired(now));
+      count += formats.size();
+    }
+    windowCount.set(count);
+    return count < maxKeys;
+  }
+
+  /**
+   * @return the bucket of the key, null if no more keys can be tracked
+   */
+  private Bucket bucketFor(Object key) {
+    Bucket bucket = buckets.get(key);
+    if (bucket == null) {
+      if (buckets.size() >= maxKeys && !evictFullBuckets()) {
+        return null;
+      }
+      bucket = new Bucket();
+      Bucket existing = buckets.putIfAbsent(key, bucket);
+      if (existing != null) {
+        return existing;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * Drops the buckets which refilled completely, at most once per second.
+   *
+   * @return true if there's room for another bucket
+   */
+  private boolean evictFullBuckets() {
+    long now = System.nanoTime();
+    long last = bucketsSwept.get();
+    if (now - last < TimeUnit.SECONDS.toNanos(1) || !bucketsSwept.compareAndSet(last, now)) {
+      return false;
+    }
+    buckets.values().removeIf(bucket -> bucket.isFull(now));
+    return buckets.size() < maxKeys;
+  }
+
+  private Counter suppressedCounter(String reason) {
+    return Counter.builder("cli_log_suppressed_total")
+      .description("Log events suppressed by the rate limiting filter")
+      .tag("reason", reason)
+      .register(MetricsManager.REGISTRY);
+  }
+
+  /**
+   * Counts the events of a message in the current window.
+   */
+  private final class Window {
+
+    private long start = System.nanoTime();
+    private int count;
+
+    synchronized boolean tryAcquire() {
+      long now = System.nanoTime();
+      if (isExpired(now)) {
+        start = now;
+        count = 0;
+      }
+      return ++count <= allowedRepetitions;
+    }
+
+    // An expired window is reset on its next use, dropping it loses nothing
+    synchronized boolean isExpired(long now) {
+      return now - start >= TimeUnit.MILLISECONDS.toNanos(dedupeWindowMillis);
+    }
+  }
+
+  /**
+   * A token bucket refilled at the rate limit, holding up to one second's worth of events.
+   */
+  private final class Bucket {
+
+    private double tokens = rateLimit;
+    private long refilled = System.nanoTime();
+
+    synchronized boolean tryAcquire() {
+      long now = System.nanoTime();
+      tokens = Math.min(rateLimit, tokens + (now - refilled) * rateLimit / 1e9);
+      refilled = now;
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+
+    // A bucket idle for a second is full again, like a new one
+    synchronized boolean isFull(long now) {
+      return now - refilled >= TimeUnit.SECONDS.toNanos(1);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package org.gbif.cli.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.gbif.cli.Diagnostics;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Endpoints on the metrics server to change log levels and diagnose the JVM of a running command:
+ * <ul>
+ *   <li>{@code GET /admin/loggers}: loggers with an explicitly set level, or the logger given by {@code name}, 404 if it
+ *   doesn't exist</li>
+ *   <li>{@code POST /admin/loggers?name=org.gbif&level=DEBUG}: sets the level of a logger, without {@code level} the
+ *   logger inherits it again, except for the root logger</li>
+ *   <li>{@code GET /admin/threads}: a thread dump</li>
+ *   <li>{@code GET /admin/heap}: a histogram of the classes on the heap, this triggers a full GC</li>
+ *   <li>{@code GET /admin/deadlocks}: the deadlocked threads, responds with 500 if there are any</li>
+ * </ul>
+ * These endpoints aren't authenticated, the metrics server must only be reachable from trusted networks when they are
+ * registered.
+ */
+public final class AdminEndpoints {
+
+  private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(AdminEndpoints.class);
+
+  private AdminEndpoints() {
+    throw new UnsupportedOperationException("Can't initialize class");
+  }
+
+  /**
+   * Registers all admin endpoints with the metrics server.
+   */
+  public static void register() {
+    MetricsManager.registerEndpoint("/admin/loggers", AdminEndpoints::loggers);
+    MetricsManager.registerEndpoint("/admin/threads", get(exchange -> respond(exchange, 200, Diagnostics.threadDump())));
+    MetricsManager.registerEndpoint("/admin/heap", get(exchange -> respond(exchange, 200, Diagnostics.heapHistogram())));
+    MetricsManager.registerEndpoint("/admin/deadlocks", get(exchange -> {
+      String deadlocks = Diagnostics.deadlocks();
+      if (deadlocks == null) {
+        respond(exchange, 200, "No deadlocked threads\n");
+      } else {
+        respond(exchange, 500, deadlocks);
+      }
+    }));
+  }
+
+  private static void loggers(HttpExchange exchange) throws IOException {
+    try {
+      LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      String name = query.get("name");
+
+      switch (exchange.getRequestMethod()) {
+        case "GET":
+          StringBuilder sb = new StringBuilder();
+          if (name != null) {
+            // Looking up a logger by getLogger would create it
+            Logger logger = context.exists(name);
+            if (logger == null) {
+              respond(exchange, 404, "Unknown logger [" + name + "]\n");
+              return;
+            }
+            appendLogger(sb, logger);
+          } else {
+            for (Logger logger : context.getLoggerList()) {
+              if (logger.getLevel() != null) {
+                appendLogger(sb, logger);
+              }
+            }
+          }
+          respond(exchange, 200, sb.toString());
+          break;
+        case "POST":
+          if (name == null || name.isEmpty()) {
+            respond(exchange, 400, "Parameter name is required\n");
+            return;
+          }
+          String level = query.get("level");
+          Level newLevel = level == null || level.isEmpty() ? null : Level.toLevel(level, null);
+          if (level != null && !level.isEmpty() && newLevel == null) {
+            respond(exchange, 400, "Unknown level [" + level + "]\n");
+            return;
+          }
+          Logger logger = context.getLogger(name);
+          if (newLevel == null && Logger.ROOT_LOGGER_NAME.equalsIgnoreCase(name)) {
+            respond(exchange, 400, "The root logger has no level to inherit, parameter level is required\n");
+            return;
+          }
+          logger.setLevel(newLevel);
+          LOG.info("Changed level of logger [{}] to [{}]", name, newLevel);
+          StringBuilder changed = new StringBuilder();
+          appendLogger(changed, logger);
+          respond(exchange, 200, changed.toString());
+          break;
+        default:
+          exchange.sendResponseHeaders(405, -1);
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Admin endpoint [{}] failed", exchange.getRequestURI().getPath(), e);
+      respond(exchange, 500, e.getMessage() + "\n");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static void appendLogger(StringBuilder sb, Logger logger) {
+    sb.append(logger.getName()).append(' ').append(logger.getLevel() == null ? "-" : logger.getLevel())
+      .append(' ').append(logger.getEffectiveLevel()).append('\n');
+  }
+
+  /**
+   * Only allows GET requests to the handler and closes the exchange afterwards.
+   */
+  private static HttpHandler get(HttpHandler handler) {
+    return exchange -> {
+      try {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+          exchange.sendResponseHeaders(405, -1);
+          return;
+        }
+        handler.handle(exchange);
+      } catch (RuntimeException e) {
+        LOG.warn("Admin endpoint [{}] failed", exchange.getRequestURI().getPath(), e);
+        respond(exchange, 500, e.getMessage() + "\n");
+      } finally {
+        exchange.close();
+      }
+    };
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] response = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(status, response.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(response);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int separator = pair.indexOf('=');
+      String key = separator < 0 ? pair : pair.substring(0, separator);
+      String value = separator < 0 ? "" : pair.substring(separator + 1);
+      parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+}
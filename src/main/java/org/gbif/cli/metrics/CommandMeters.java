@@ -0,0 +1,163 @@
+package org.gbif.cli.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The meters of a single command, resolved once so recording doesn't allocate or look anything up.
+ * <p/>
+ * All commands share the meter names {@code cli_command_executions_total}, {@code cli_command_errors_total} and
+ * {@code cli_command_duration_seconds} and are told apart by their {@code command} tag. To bound the number of time
+ * series at most {@link #MAX_COMMANDS} distinct commands get their own tag, all further ones are recorded as
+ * {@code other}.
+ * <pre><code>
+ * CommandMeters meters = CommandMeters.forCommand("crawl");
+ * ...
+ * meters.executions().increment();
+ * meters.duration().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+ * </code></pre>
+ */
+public final class CommandMeters {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CommandMeters.class);
+
+  /**
+   * Maximum number of distinct {@code command} tag values.
+   */
+  public static final int MAX_COMMANDS = 100;
+
+  static final String OTHER = "other";
+
+  private static final ConcurrentMap<String, CommandMeters> METERS = new ConcurrentHashMap<>();
+  private static final AtomicBoolean LIMIT_WARNED = new AtomicBoolean();
+
+  private final String command;
+  private final Counter executions;
+  private final Counter errors;
+  private final Timer duration;
+  private final ConcurrentMap<String, Timer> phases = new ConcurrentHashMap<>();
+
+  private CommandMeters(String command) {
+    this.command = command;
+    executions = Counter.builder("cli_command_executions_total")
+      .description("Number of command executions")
+      .tag("command", command)
+      .register(MetricsManager.REGISTRY);
+    errors = Counter.builder("cli_command_errors_total")
+      .description("Number of command executions that failed")
+      .tag("command", command)
+      .register(MetricsManager.REGISTRY);
+    duration = MetricsManager.createTimer("cli_command_duration_seconds", "Execution time of commands",
+                                          "command", command);
+  }
+
+  /**
+   * Returns the meters of a command, registering them the first time. Keep the returned handle instead of calling
+   * this on hot paths.
+   *
+   * @param command name of the command
+   *
+   * @return the meters, shared with all other commands beyond {@link #MAX_COMMANDS}
+   */
+  public static CommandMeters forCommand(String command) {
+    checkNotNull(command, "command can't be null");
+    CommandMeters meters = METERS.get(command);
+    if (meters != null) {
+      return meters;
+    }
+    synchronized (METERS) {
+      meters = METERS.get(command);
+      if (meters == null) {
+        if (METERS.size() >= MAX_COMMANDS) {
+          if (LIMIT_WARNED.compareAndSet(false, true)) {
+            LOG.warn("More than {} commands are metered, recording [{}] and all further ones as [{}]", MAX_COMMANDS,
+                     command, OTHER);
+          }
+          return METERS.computeIfAbsent(OTHER, CommandMeters::new);
+        }
+        meters = new CommandMeters(command);
+        METERS.put(command, meters);
+      }
+      return meters;
+    }
+  }
+
+  /**
+   * Forgets all metered commands and removes their meters from {@link MetricsManager#REGISTRY}, so the cardinality
+   * limit starts over, e.g. between tests.
+   */
+  public static void reset() {
+    synchronized (METERS) {
+      for (CommandMeters meters : METERS.values()) {
+        MetricsManager.REGISTRY.remove(meters.executions);
+        MetricsManager.REGISTRY.remove(meters.errors);
+        MetricsManager.REGISTRY.remove(meters.duration);
+        for (Timer phase : meters.phases.values()) {
+          MetricsManager.REGISTRY.remove(phase);
+        }
+      }
+      METERS.clear();
+      LIMIT_WARNED.set(false);
+    }
+  }
+
+  /**
+   * @return the value of the {@code command} tag, {@code other} if the cardinality limit was reached
+   */
+  public String getCommand() {
+    return command;
+  }
+
+  public Counter executions() {
+    return executions;
+  }
+
+  public Counter errors() {
+    return errors;
+  }
+
+  public Timer duration() {
+    return duration;
+  }
+
+  /**
+   * Returns the timer of a phase of this command, e.g. parsing its configuration, registering it the first time. Keep
+   * the returned timer instead of calling this on hot paths.
+   *
+   * @param phase name of the phase, only a few distinct phases should be used
+   *
+   * @return the {@code cli_command_phase_duration_seconds} timer tagged with the command and phase
+   */
+  public Timer phase(String phase) {
+    return phases.computeIfAbsent(phase, name -> MetricsManager.createTimer(
+      "cli_command_phase_duration_seconds", "Execution time of the phases of commands", "command", command,
+      "phase", name));
+  }
+
+  /**
+   * Counts an execution, times it and counts it as error if it throws an exception.
+   *
+   * @param runnable the execution
+   */
+  public void record(Runnable runnable) {
+    executions.increment();
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } catch (RuntimeException | Error e) {
+      errors.increment();
+      throw e;
+    } finally {
+      duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package org.gbif.cli.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering a phase of {@link org.gbif.cli.BaseCommand#run(String...)}, from parsing the command line to
+ * the actual work.
+ */
+@Name("org.gbif.cli.CommandPhase")
+@Label("Command Phase")
+@Category("GBIF CLI")
+@Description("A phase of running a command")
+public class CommandPhaseEvent extends jdk.jfr.Event {
+
+  @Label("Command")
+  public String command;
+
+  @Label("Phase")
+  public String phase;
+}
@@ -0,0 +1,91 @@
+package org.gbif.cli.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Java Flight Recorder recording around a command, which includes the {@link CommandPhaseEvent} and
+ * {@link ScheduledRunEvent} events.
+ * <p/>
+ * The recording is written to its destination when it is closed or the JVM exits and can be dumped while it is
+ * running using {@link #dump()}.
+ */
+public final class FlightRecording implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FlightRecording.class);
+
+  private final Recording recording;
+  private final Path destination;
+
+  private FlightRecording(Recording recording, Path destination) {
+    this.recording = recording;
+    this.destination = destination;
+  }
+
+  /**
+   * Starts a recording.
+   *
+   * @param settings    name of a JFR configuration like {@code default} or {@code profile}, or path to a .jfc file
+   * @param destination file the recording is written to
+   *
+   * @return the running recording
+   *
+   * @throws IOException if the settings can't be read or the destination can't be written
+   */
+  public static FlightRecording start(String settings, Path destination) throws IOException {
+    Configuration configuration;
+    try {
+      configuration = Files.exists(Path.of(settings))
+        ? Configuration.create(Path.of(settings))
+        : Configuration.getConfiguration(settings);
+    } catch (ParseException e) {
+      throw new IOException("Invalid JFR settings [" + settings + "]", e);
+    }
+
+    Recording recording = new Recording(configuration);
+    recording.setName("gbif-cli");
+    recording.enable(CommandPhaseEvent.class);
+    recording.enable(ScheduledRunEvent.class);
+    recording.setToDisk(true);
+    recording.setDumpOnExit(true);
+    recording.setDestination(destination);
+    recording.start();
+    LOG.info("Started flight recording with [{}] settings to [{}]", settings, destination);
+    return new FlightRecording(recording, destination);
+  }
+
+  /**
+   * Writes everything recorded so far to the destination while the recording continues.
+   *
+   * @return the destination
+   *
+   * @throws IOException if the destination can't be written
+   */
+  public Path dump() throws IOException {
+    recording.dump(destination);
+    LOG.info("Dumped flight recording to [{}]", destination);
+    return destination;
+  }
+
+  public Path getDestination() {
+    return destination;
+  }
+
+  /**
+   * Stops the recording and writes it to its destination.
+   */
+  @Override
+  public void close() {
+    recording.stop();
+    recording.close();
+    LOG.info("Wrote flight recording to [{}]", destination);
+  }
+}
@@ -0,0 +1,126 @@
+package org.gbif.cli.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.prometheus.client.exporter.common.TextFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports {@link MetricsManager#REGISTRY} once when a command finishes, for commands that don't live long enough to
+ * be scraped.
+ * <p/>
+ * The metrics can be written to a file read by the textfile collector of the node_exporter and pushed to a
+ * Pushgateway. The file is replaced atomically so the collector never reads a partial file. The push replaces all
+ * metrics of the job using {@code PUT {url}/metrics/job/{job}}.
+ */
+public class MetricsExporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsExporter.class);
+
+  private static final int TIMEOUT_MILLIS = 10_000;
+
+  private final Path textFile;
+  private final String pushUrl;
+  private final String job;
+  private final AtomicBoolean exported = new AtomicBoolean();
+
+  /**
+   * @param textFile file to write, should end with {@code .prom} for the node_exporter, null to not write a file
+   * @param pushUrl  base URL of the Pushgateway, null to not push
+   * @param job      name of the job the pushed metrics are grouped by
+   */
+  public MetricsExporter(Path textFile, String pushUrl, String job) {
+    this.textFile = textFile;
+    this.pushUrl = pushUrl;
+    this.job = job;
+  }
+
+  /**
+   * Exports the metrics unless they have been exported before, so it can be called both when the command finishes and
+   * from a shutdown hook. Failures are logged and never thrown so they don't hide the outcome of the command.
+   */
+  public void export() {
+    if (!exported.compareAndSet(false, true)) {
+      return;
+    }
+    if (textFile != null) {
+      try {
+        writeTextFile();
+        LOG.debug("Wrote metrics to [{}]", textFile);
+      } catch (IOException e) {
+        LOG.warn("Unable to write metrics to [{}]", textFile, e);
+      }
+    }
+    if (pushUrl != null) {
+      try {
+        push();
+        LOG.debug("Pushed metrics of job [{}] to [{}]", job, pushUrl);
+      } catch (IOException e) {
+        LOG.warn("Unable to push metrics of job [{}] to [{}]", job, pushUrl, e);
+      }
+    }
+  }
+
+  /**
+   * @return a thread exporting the metrics, to be registered as shutdown hook
+   */
+  public Thread shutdownHook() {
+    return new Thread(this::export, "metrics-export");
+  }
+
+  private void writeTextFile() throws IOException {
+    Path directory = textFile.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    // The node_exporter only reads files ending with .prom
+    Path tmp = Files.createTempFile(directory, "." + textFile.getFileName(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        MetricsManager.REGISTRY.scrape(writer, TextFormat.CONTENT_TYPE_004);
+      }
+      try {
+        Files.move(tmp, textFile, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, textFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private void push() throws IOException {
+    String base = pushUrl.endsWith("/") ? pushUrl.substring(0, pushUrl.length() - 1) : pushUrl;
+    URL url = new URL(base + "/metrics/job/" + URLEncoder.encode(job, StandardCharsets.UTF_8).replace("+", "%20"));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestMethod("PUT");
+      connection.setDoOutput(true);
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+      connection.setRequestProperty("Content-Type", TextFormat.CONTENT_TYPE_004);
+      connection.setChunkedStreamingMode(0);
+      try (OutputStream out = connection.getOutputStream();
+           Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+        MetricsManager.REGISTRY.scrape(writer, TextFormat.CONTENT_TYPE_004);
+      }
+      int status = connection.getResponseCode();
+      if (status < 200 || status >= 300) {
+        throw new IOException("Pushgateway responded with HTTP status " + status);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
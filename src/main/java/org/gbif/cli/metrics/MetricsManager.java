@@ -2,6 +2,7 @@ package org.gbif.cli.metrics;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
@@ -12,15 +13,21 @@ import io.micrometer.core.instrument.binder.system.UptimeMetrics;
 import io.micrometer.prometheus.PrometheusConfig;
 import io.micrometer.prometheus.PrometheusMeterRegistry;
 
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import org.gbif.cli.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
@@ -31,7 +38,19 @@ public class MetricsManager {
   
   public static final PrometheusMeterRegistry REGISTRY = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
   
+  // Histogram configuration applied to timers created by this class
+  private static volatile boolean percentileHistogram;
+  private static volatile double[] percentiles = new double[0];
+  private static volatile Duration[] serviceLevelObjectives = new Duration[0];
+  private static volatile Duration minimumExpectedValue;
+  private static volatile Duration maximumExpectedValue;
+
+  // Additional endpoints served next to /metrics, by path
+  private static final Map<String, HttpHandler> ENDPOINTS = new LinkedHashMap<>();
+
   private static HttpServer server;
+  // The executor created for the server if none was given
+  private static ExecutorService serverExecutor;
   private static int port = 9090; // Default port
   
   static {
@@ -59,19 +78,32 @@ public class MetricsManager {
    * @param serverPort The port on which the HTTP server should listen
    */
   public static void startMetricsServer(int serverPort) {
+    startMetricsServer(new InetSocketAddress(serverPort), null, Duration.ZERO);
+  }
+
+  /**
+   * Start the metrics HTTP server to expose Prometheus metrics on {@code /metrics}.
+   * <p/>
+   * Scrapes are streamed to the client, compressed with gzip if the client accepts it and rendered in the OpenMetrics
+   * format if the client prefers it over the Prometheus text format.
+   *
+   * @param address  The address to bind to, use port 0 to pick a free port
+   * @param executor The executor handling requests, null for two daemon threads
+   * @param cacheTtl How long a rendered scrape is reused for further scrapes, zero to render every scrape
+   */
+  public static synchronized void startMetricsServer(InetSocketAddress address, Executor executor, Duration cacheTtl) {
     try {
-      port = serverPort;
-      server = HttpServer.create(new InetSocketAddress(port), 0);
-      server.createContext("/metrics", httpExchange -> {
-        String response = REGISTRY.scrape();
-        httpExchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
-        httpExchange.sendResponseHeaders(200, response.getBytes().length);
-        try (OutputStream os = httpExchange.getResponseBody()) {
-          os.write(response.getBytes());
-        }
-      });
-      
-      server.setExecutor(Executors.newFixedThreadPool(2));
+      server = HttpServer.create(address, 0);
+      port = server.getAddress().getPort();
+      server.createContext("/metrics", new ScrapeHandler(cacheTtl));
+      for (Map.Entry<String, HttpHandler> endpoint : ENDPOINTS.entrySet()) {
+        server.createContext(endpoint.getKey(), endpoint.getValue());
+      }
+
+      if (executor == null) {
+        executor = serverExecutor = Executors.newFixedThreadPool(2, VirtualThreads.threadFactory("metrics-http", false));
+      }
+      server.setExecutor(executor);
       server.start();
       
     try {
@@ -89,15 +121,45 @@ public class MetricsManager {
       LOG.error("Failed to start metrics server", e);
     }
   }
+
+  /**
+   * Adds an endpoint to the metrics server, e.g. for diagnostics. Endpoints can be added before or after the server
+   * has been started.
+   *
+   * @param path    path of the endpoint, e.g. {@code /jfr}
+   * @param handler handling requests to the endpoint
+   */
+  public static synchronized void registerEndpoint(String path, HttpHandler handler) {
+    HttpHandler previous = ENDPOINTS.put(path, handler);
+    if (server != null) {
+      if (previous != null) {
+        server.removeContext(path);
+      }
+      server.createContext(path, handler);
+    }
+    LOG.debug("Registered metrics server endpoint [{}]", path);
+  }
+
+  /**
+   * @return the port the metrics server listens on, the default port if it hasn't been started
+   */
+  public static int getPort() {
+    return port;
+  }
   
   /**
    * Stop the metrics server.
    */
-  public static void stopMetricsServer() {
+  public static synchronized void stopMetricsServer() {
     if (server != null) {
       server.stop(0);
+      server = null;
       LOG.info("Metrics server stopped");
     }
+    if (serverExecutor != null) {
+      serverExecutor.shutdown();
+      serverExecutor = null;
+    }
   }
   
   /**
@@ -111,4 +173,48 @@ public class MetricsManager {
         .description(description)
         .register(REGISTRY);
   }
-} 
\ No newline at end of file
+
+  /**
+   * Configures the distribution statistics of timers created by {@link #createTimer(String, String, String...)}
+   * afterwards, timers created before are not changed.
+   *
+   * @param histogram              publish a percentile histogram so percentiles can be aggregated in Prometheus
+   * @param percentiles            percentiles computed in this process, e.g. 0.95 and 0.99, these can't be aggregated
+   * @param serviceLevelObjectives additional histogram buckets, e.g. for the latency promised by a service
+   * @param minimumExpectedValue   lower bound of the histogram buckets, null for the default
+   * @param maximumExpectedValue   upper bound of the histogram buckets, null for the default
+   */
+  public static void configureTimers(boolean histogram, double[] percentiles, Duration[] serviceLevelObjectives,
+                                     Duration minimumExpectedValue, Duration maximumExpectedValue) {
+    MetricsManager.percentileHistogram = histogram;
+    MetricsManager.percentiles = percentiles == null ? new double[0] : percentiles.clone();
+    MetricsManager.serviceLevelObjectives =
+      serviceLevelObjectives == null ? new Duration[0] : serviceLevelObjectives.clone();
+    MetricsManager.minimumExpectedValue = minimumExpectedValue;
+    MetricsManager.maximumExpectedValue = maximumExpectedValue;
+  }
+
+  /**
+   * Create and register a timer using the distribution statistics set by
+   * {@link #configureTimers(boolean, double[], Duration[], Duration, Duration)}.
+   * @param name Name of the timer
+   * @param description Description of what the timer measures
+   * @param tags Tags as alternating keys and values
+   * @return The created timer, or the existing one if a timer with the same name and tags was registered before
+   */
+  public static Timer createTimer(String name, String description, String... tags) {
+    Timer.Builder builder = Timer.builder(name)
+        .description(description)
+        .tags(tags)
+        .publishPercentileHistogram(percentileHistogram)
+        .publishPercentiles(percentiles)
+        .serviceLevelObjectives(serviceLevelObjectives);
+    if (minimumExpectedValue != null) {
+      builder.minimumExpectedValue(minimumExpectedValue);
+    }
+    if (maximumExpectedValue != null) {
+      builder.maximumExpectedValue(maximumExpectedValue);
+    }
+    return builder.register(REGISTRY);
+  }
+}
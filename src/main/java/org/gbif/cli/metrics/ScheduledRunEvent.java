@@ -0,0 +1,37 @@
+package org.gbif.cli.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * JFR event covering a single run of a {@link org.gbif.cli.service.ScheduledTaskService}.
+ */
+@Name("org.gbif.cli.ScheduledRun")
+@Label("Scheduled Run")
+@Category("GBIF CLI")
+@Description("A run of a scheduled service")
+public class ScheduledRunEvent extends jdk.jfr.Event {
+
+  @Label("Service")
+  public String service;
+
+  @Label("Scheduled Time")
+  @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+  public long scheduledTime;
+
+  @Label("Lag")
+  @Description("Delay between the scheduled and the actual start")
+  @Timespan(Timespan.NANOSECONDS)
+  public long lag;
+
+  @Label("Catch Up")
+  @Description("Whether this run catches up on a slot missed while the service wasn't running")
+  public boolean catchUp;
+
+  @Label("Success")
+  public boolean success;
+}
@@ -0,0 +1,125 @@
+package org.gbif.cli.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.prometheus.client.exporter.common.TextFormat;
+
+/**
+ * Serves scrapes of {@link MetricsManager#REGISTRY} without building the whole response in memory.
+ * <p/>
+ * The format is negotiated from the {@code Accept} header between the Prometheus text format and OpenMetrics and the
+ * response is compressed with gzip if the {@code Accept-Encoding} header allows it. If a cache TTL is given the
+ * rendered scrape of each format is kept for that long so many scrapers hitting the same process at once don't all
+ * render it.
+ */
+class ScrapeHandler implements HttpHandler {
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private final long cacheTtlNanos;
+  private final Map<String, CachedScrape> cache = new ConcurrentHashMap<>();
+
+  ScrapeHandler(Duration cacheTtl) {
+    this.cacheTtlNanos = cacheTtl == null ? 0 : cacheTtl.toNanos();
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      String contentType = TextFormat.chooseContentType(exchange.getRequestHeaders().getFirst("Accept"));
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+
+      boolean gzip = acceptsGzip(exchange.getRequestHeaders().get("Accept-Encoding"));
+      if (gzip) {
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      }
+
+      if (cacheTtlNanos > 0) {
+        byte[] body = cachedScrape(contentType);
+        if (gzip) {
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody(), BUFFER_SIZE)) {
+            out.write(body);
+          }
+        } else {
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        }
+      } else {
+        // Length 0 means chunked encoding, so nothing needs to be buffered
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        if (gzip) {
+          out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+          MetricsManager.REGISTRY.scrape(writer, contentType);
+        }
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] cachedScrape(String contentType) throws IOException {
+    long now = System.nanoTime();
+    CachedScrape cached = cache.get(contentType);
+    if (cached == null || now - cached.renderedAt > cacheTtlNanos) {
+      synchronized (this) {
+        cached = cache.get(contentType);
+        if (cached == null || now - cached.renderedAt > cacheTtlNanos) {
+          ByteArrayOutputStream body = new ByteArrayOutputStream(BUFFER_SIZE);
+          try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+            MetricsManager.REGISTRY.scrape(writer, contentType);
+          }
+          cached = new CachedScrape(System.nanoTime(), body.toByteArray());
+          cache.put(contentType, cached);
+        }
+      }
+    }
+    return cached.body;
+  }
+
+  private static boolean acceptsGzip(List<String> acceptEncodings) {
+    if (acceptEncodings == null) {
+      return false;
+    }
+    for (String acceptEncoding : acceptEncodings) {
+      for (String encoding : acceptEncoding.split(",")) {
+        String[] parts = encoding.trim().split(";");
+        if ("gzip".equalsIgnoreCase(parts[0].trim()) && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static final class CachedScrape {
+    private final long renderedAt;
+    private final byte[] body;
+
+    private CachedScrape(long renderedAt, byte[] body) {
+      this.renderedAt = renderedAt;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package org.gbif.cli.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records how long the individual start up phases of the {@link org.gbif.cli.Application} and
+ * {@link org.gbif.cli.BaseCommand} take before the actual work of a command starts.
+ * <p/>
+ * Timings are always recorded as this is just a few calls to {@link System#nanoTime()}, but they are only printed and
+ * published as timers if a report is requested using the {@code --startup-report} parameter.
+ */
+public class StartupProfiler {
+  private static final Logger LOG = LoggerFactory.getLogger(StartupProfiler.class);
+
+  private static final String TIMER_NAME = "cli_startup_phase_duration_seconds";
+
+  // Phase name to duration in nanoseconds, in the order the phases first ran
+  private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+
+  // Prevent instantiation
+  private StartupProfiler() {}
+
+  /**
+   * Times a start up phase.
+   *
+   * @param phase Name of the phase
+   * @param code Code to execute and time
+   * @param <T> Return type of the code block
+   * @return The result of the code block
+   */
+  public static <T> T time(String phase, Supplier<T> code) {
+    long start = System.nanoTime();
+    try {
+      return code.get();
+    } finally {
+      record(phase, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Times a start up phase with no return value.
+   *
+   * @param phase Name of the phase
+   * @param runnable Code to execute and time
+   */
+  public static void time(String phase, Runnable runnable) {
+    long start = System.nanoTime();
+    try {
+      runnable.run();
+    } finally {
+      record(phase, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Records the duration of a start up phase, replacing any earlier duration of a phase with the same name.
+   *
+   * @param phase Name of the phase
+   * @param nanos Duration in nanoseconds
+   */
+  public static synchronized void record(String phase, long nanos) {
+    PHASES.put(phase, nanos);
+  }
+
+  /**
+   * Forgets all recorded phases, e.g. when a new application run starts.
+   */
+  public static synchronized void reset() {
+    PHASES.clear();
+  }
+
+  /**
+   * Logs a breakdown of all phases recorded so far and publishes them as timers tagged with the phase name in
+   * {@link MetricsManager#REGISTRY}. The recorded phases are cleared afterwards so calling this twice only reports
+   * phases once.
+   */
+  public static synchronized void report() {
+    if (PHASES.isEmpty()) {
+      return;
+    }
+
+    long total = 0;
+    for (long nanos : PHASES.values()) {
+      total += nanos;
+    }
+
+    LOG.info("Start up report:");
+    for (Map.Entry<String, Long> phase : PHASES.entrySet()) {
+      LOG.info(String.format(Locale.ENGLISH, " %-25s %10.3f ms %5.1f%%", phase.getKey(), toMillis(phase.getValue()),
+                             total == 0 ? 0 : 100.0 * phase.getValue() / total));
+      Timer.builder(TIMER_NAME)
+          .description("Duration of the start up phases before a command starts its work")
+          .tag("phase", phase.getKey())
+          .register(MetricsManager.REGISTRY)
+          .record(phase.getValue(), TimeUnit.NANOSECONDS);
+    }
+    LOG.info(String.format(Locale.ENGLISH, " %-25s %10.3f ms", "total", toMillis(total)));
+
+    PHASES.clear();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -102,6 +102,10 @@
  * Then annotate your commands with either {@code {@literal @MetaInfServices}}
  * or {@code {@literal @MetaInfServices(Command.class}}. Please read up on the
  * <a href="http://metainf-services.kohsuke.org/">homepage</a> of the library for more details.
+ * <p/>
+ * Additionally annotating a command with {@code {@literal @CommandName("name")}} allows the application to select it
+ * by name without instantiating any of the other commands on the classpath, which keeps start up fast for
+ * applications bundling many commands. The annotation value has to match the name passed to the constructor.
  *
  * <h2>Jackson usage</h2>
  *
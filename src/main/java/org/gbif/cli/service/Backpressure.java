@@ -0,0 +1,22 @@
+package org.gbif.cli.service;
+
+/**
+ * Defines what happens to work submitted to a {@link ParallelWorkerService} while its queue is full.
+ */
+public enum Backpressure {
+
+  /**
+   * The submitting thread waits until there is room in the queue.
+   */
+  BLOCK,
+
+  /**
+   * The work is rejected and the submitting thread decides what to do with it.
+   */
+  REJECT,
+
+  /**
+   * The submitting thread processes the work itself, which slows down submission as well.
+   */
+  CALLER_RUNS
+}
@@ -0,0 +1,47 @@
+package org.gbif.cli.service;
+
+import java.util.StringJoiner;
+
+import com.beust.jcommander.Parameter;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configures when a {@link BatchingService} flushes its items. Can be embedded in a command's configuration object,
+ * optionally using {@code @ParametersDelegate} to make it configurable from the command line.
+ */
+public class BatchingConfiguration {
+
+  @Parameter(
+    names = "--batch-size",
+    description = "Maximum number of items in a batch")
+  @Min(1)
+  public int maxBatchSize = 1000;
+
+  @Parameter(
+    names = "--batch-bytes",
+    description = "Maximum estimated size of a batch in bytes, 0 for no limit")
+  @Min(0)
+  public long maxBatchBytes;
+
+  @Parameter(
+    names = "--batch-max-latency",
+    description = "Maximum number of milliseconds an item waits in an incomplete batch before it is flushed")
+  @Min(1)
+  public long maxLatencyMillis = 1000;
+
+  @Parameter(
+    names = "--batch-in-flight",
+    description = "Maximum number of batches flushed at the same time, adding items blocks once it is reached")
+  @Min(1)
+  public int maxInFlightFlushes = 1;
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", BatchingConfiguration.class.getSimpleName() + "[", "]")
+      .add("maxBatchSize=" + maxBatchSize)
+      .add("maxBatchBytes=" + maxBatchBytes)
+      .add("maxLatencyMillis=" + maxLatencyMillis)
+      .add("maxInFlightFlushes=" + maxInFlightFlushes)
+      .toString();
+  }
+}
@@ -0,0 +1,362 @@
+package org.gbif.cli.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.gbif.cli.VirtualThreads;
+import org.gbif.cli.metrics.MetricsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Service that collects items into batches and flushes them together, e.g. to write them to a search index or
+ * database in bulk.
+ * <p/>
+ * A batch is flushed as soon as it reaches the maximum number of items or the maximum size in bytes as estimated by
+ * {@link #sizeOf(Object)}, or once its oldest item waited for the maximum latency, whichever comes first. Up to the
+ * configured number of batches are flushed at the same time, once that is reached {@link #add(Object)} blocks until
+ * a flush finishes.
+ * <p/>
+ * On shutdown no further items are accepted, the incomplete batch is flushed and all flushes are waited for before
+ * {@link #onStop()} is called.
+ * <p/>
+ * The following metrics are registered, all tagged with the {@link #serviceName()}:
+ * <ul>
+ *   <li>{@code cli_batch_size}: distribution of the number of items per batch</li>
+ *   <li>{@code cli_batch_bytes}: distribution of the estimated size of batches, if limited</li>
+ *   <li>{@code cli_batch_flush_duration_seconds}: time taken to flush a batch</li>
+ *   <li>{@code cli_batch_flushes_total}: flushes tagged with what triggered them, {@code size}, {@code bytes},
+ *   {@code latency} or {@code shutdown}</li>
+ *   <li>{@code cli_batch_flush_failures_total}: flushes that threw an exception</li>
+ * </ul>
+ *
+ * @param <T> type of the items batched
+ */
+public abstract class BatchingService<T> extends AbstractIdleService implements Drainable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BatchingService.class);
+
+  // What caused a batch to be flushed, the lower case name is used as tag
+  private enum Trigger {
+    SIZE, BYTES, LATENCY, SHUTDOWN
+  }
+
+  private final BatchingConfiguration configuration;
+
+  private final Object lock = new Object();
+  // The incomplete batch and its state, guarded by lock
+  private List<T> batch = new ArrayList<>();
+  private long batchBytes;
+  private long generation;
+  // Batches taken but not flushed yet
+  private int pending;
+
+  private volatile boolean accepting;
+  private Semaphore inFlight;
+  private ScheduledExecutorService timer;
+  private ExecutorService flushers;
+
+  private DistributionSummary batchSizes;
+  private DistributionSummary batchByteSizes;
+  private Timer flushTimer;
+  private Map<Trigger, Counter> flushes;
+  private Counter failures;
+
+  protected BatchingService(BatchingConfiguration configuration) {
+    this.configuration = checkNotNull(configuration, "configuration can't be null");
+  }
+
+  /**
+   * Flushes a batch, called from up to the configured number of threads at the same time.
+   *
+   * @param batch to flush, never empty
+   *
+   * @throws Exception passed on to {@link #onFlushFailure(List, Exception)}
+   */
+  protected abstract void flush(List<T> batch) throws Exception;
+
+  /**
+   * Estimates the size of an item in bytes, only used if the size of batches is limited.
+   *
+   * @param item to estimate
+   *
+   * @return estimated size in bytes, 0 by default
+   */
+  protected long sizeOf(T item) {
+    return 0;
+  }
+
+  /**
+   * Called when flushing a batch failed. Logs the exception by default.
+   *
+   * @param batch     that failed
+   * @param exception thrown by {@link #flush(List)}
+   */
+  protected void onFlushFailure(List<T> batch, Exception exception) {
+    LOG.error("Flushing a batch of {} items in [{}] failed", batch.size(), serviceName(), exception);
+  }
+
+  /**
+   * Called once the service is ready to accept items.
+   */
+  protected void onStart() throws Exception {
+  }
+
+  /**
+   * Called once all batches have been flushed on shutdown.
+   */
+  protected void onStop() throws Exception {
+  }
+
+  /**
+   * @return the configuration of this service
+   */
+  protected final BatchingConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Adds an item to the current batch, which is flushed if it is complete. Blocks while the maximum number of batches
+   * are being flushed.
+   *
+   * @param item to add
+   *
+   * @return true if the item was added, false if the service is stopping
+   *
+   * @throws InterruptedException if interrupted while waiting for a flush to finish
+   * @throws IllegalStateException if the service hasn't been started yet
+   */
+  public final boolean add(T item) throws InterruptedException {
+    checkNotNull(item, "item can't be null");
+    checkState(flushers != null, "Service [%s] hasn't been started", serviceName());
+
+    List<T> complete = null;
+    Trigger trigger = null;
+    synchronized (lock) {
+      if (!accepting) {
+        return false;
+      }
+      if (batch.isEmpty()) {
+        long batchGeneration = generation;
+        timer.schedule(() -> flushIfCurrent(batchGeneration, Trigger.LATENCY), configuration.maxLatencyMillis,
+                       TimeUnit.MILLISECONDS);
+      }
+      batch.add(item);
+      if (configuration.maxBatchBytes > 0) {
+        batchBytes += sizeOf(item);
+      }
+
+      if (batch.size() >= configuration.maxBatchSize) {
+        trigger = Trigger.SIZE;
+      } else if (configuration.maxBatchBytes > 0 && batchBytes >= configuration.maxBatchBytes) {
+        trigger = Trigger.BYTES;
+      }
+      if (trigger != null) {
+        complete = takeBatch();
+      }
+    }
+
+    if (complete != null) {
+      try {
+        submit(complete, trigger);
+      } catch (InterruptedException e) {
+        putBack(complete);
+        throw e;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected final void startUp() throws Exception {
+    registerMetrics();
+    inFlight = new Semaphore(configuration.maxInFlightFlushes);
+    timer = Executors.newSingleThreadScheduledExecutor(VirtualThreads.threadFactory(serviceName() + "-timer", false));
+    flushers = Executors.newFixedThreadPool(configuration.maxInFlightFlushes,
+                                            VirtualThreads.threadFactory(serviceName() + "-flush", false));
+    accepting = true;
+    LOG.info("Started [{}] with {}", serviceName(), configuration);
+    onStart();
+  }
+
+  @Override
+  public void stopAccepting() {
+    synchronized (lock) {
+      accepting = false;
+    }
+  }
+
+  /**
+   * Flushes the incomplete batch and waits for all flushes to finish. Batches put back in the meantime, e.g. by a
+   * latency flush interrupted on shutdown, are flushed as well.
+   */
+  @Override
+  public final boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+    if (flushers == null) {
+      return true;
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      List<T> remaining;
+      synchronized (lock) {
+        long remainingNanos;
+        while (batch.isEmpty() && pending > 0 && (remainingNanos = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+        }
+        if (batch.isEmpty()) {
+          return pending == 0;
+        }
+        remaining = takeBatch();
+      }
+      if (!inFlight.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        putBack(remaining);
+        return false;
+      }
+      flushers.execute(() -> runFlush(remaining, Trigger.SHUTDOWN));
+    }
+  }
+
+  @Override
+  protected final void shutDown() throws Exception {
+    stopAccepting();
+    timer.shutdownNow();
+    while (!awaitDrained(1, TimeUnit.MINUTES)) {
+      LOG.info("Waiting for [{}] to flush its batches", serviceName());
+    }
+    flushers.shutdown();
+    onStop();
+  }
+
+  // Has to be called holding the lock
+  private List<T> takeBatch() {
+    List<T> complete = batch;
+    batch = new ArrayList<>();
+    batchBytes = 0;
+    generation++;
+    pending++;
+    return complete;
+  }
+
+  // Returns a batch that couldn't be flushed to the incomplete batch
+  private void putBack(List<T> taken) {
+    synchronized (lock) {
+      taken.addAll(batch);
+      batch = taken;
+      batchBytes = configuration.maxBatchBytes > 0 ? batch.stream().mapToLong(this::sizeOf).sum() : 0;
+      pending--;
+      // Wakes awaitDrained, which has to flush the batch again
+      lock.notifyAll();
+
+      // The taken batch's timer is void now, so a new one is armed for the combined batch
+      generation++;
+      Trigger trigger = Trigger.LATENCY;
+      long delay = configuration.maxLatencyMillis;
+      if (batch.size() >= configuration.maxBatchSize) {
+        trigger = Trigger.SIZE;
+        delay = 0;
+      } else if (configuration.maxBatchBytes > 0 && batchBytes >= configuration.maxBatchBytes) {
+        trigger = Trigger.BYTES;
+        delay = 0;
+      }
+      long batchGeneration = generation;
+      Trigger batchTrigger = trigger;
+      try {
+        timer.schedule(() -> flushIfCurrent(batchGeneration, batchTrigger), delay, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // Shutting down, the batch is flushed by awaitDrained
+      }
+    }
+  }
+
+  private void flushIfCurrent(long batchGeneration, Trigger trigger) {
+    List<T> expired;
+    synchronized (lock) {
+      if (generation != batchGeneration || batch.isEmpty()) {
+        return;
+      }
+      expired = takeBatch();
+    }
+    try {
+      submit(expired, trigger);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      putBack(expired);
+    }
+  }
+
+  private void submit(List<T> complete, Trigger trigger) throws InterruptedException {
+    inFlight.acquire();
+    flushers.execute(() -> runFlush(complete, trigger));
+  }
+
+  private void runFlush(List<T> complete, Trigger trigger) {
+    long start = System.nanoTime();
+    try {
+      batchSizes.record(complete.size());
+      if (configuration.maxBatchBytes > 0) {
+        batchByteSizes.record(complete.stream().mapToLong(this::sizeOf).sum());
+      }
+      flushes.get(trigger).increment();
+      flush(Collections.unmodifiableList(complete));
+    } catch (Exception e) {
+      failures.increment();
+      onFlushFailure(complete, e);
+    } finally {
+      flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      inFlight.release();
+      synchronized (lock) {
+        pending--;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void registerMetrics() {
+    String name = serviceName();
+    batchSizes = DistributionSummary.builder("cli_batch_size")
+      .description("Number of items per flushed batch")
+      .tag("service", name)
+      .publishPercentileHistogram()
+      .register(MetricsManager.REGISTRY);
+    batchByteSizes = DistributionSummary.builder("cli_batch_bytes")
+      .description("Estimated size of flushed batches")
+      .baseUnit("bytes")
+      .tag("service", name)
+      .publishPercentileHistogram()
+      .register(MetricsManager.REGISTRY);
+    flushTimer = Timer.builder("cli_batch_flush_duration_seconds")
+      .description("Time taken to flush a batch")
+      .tag("service", name)
+      .publishPercentileHistogram()
+      .register(MetricsManager.REGISTRY);
+    flushes = new EnumMap<>(Trigger.class);
+    for (Trigger trigger : Trigger.values()) {
+      flushes.put(trigger, Counter.builder("cli_batch_flushes_total")
+        .description("Batches flushed")
+        .tag("service", name)
+        .tag("trigger", trigger.name().toLowerCase(Locale.ENGLISH))
+        .register(MetricsManager.REGISTRY));
+    }
+    failures = Counter.builder("cli_batch_flush_failures_total")
+      .description("Batches whose flush threw an exception")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+  }
+}
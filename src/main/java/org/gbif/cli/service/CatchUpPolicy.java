@@ -0,0 +1,23 @@
+package org.gbif.cli.service;
+
+/**
+ * Defines what a {@link ScheduledTaskService} does on startup with runs that were missed since its last successful run.
+ */
+public enum CatchUpPolicy {
+
+  /**
+   * Missed runs are ignored and the service continues with the next slot.
+   */
+  SKIP,
+
+  /**
+   * A single run for the latest missed slot is started right away.
+   */
+  RUN_ONCE,
+
+  /**
+   * Every missed slot is run, one after the other, starting with the oldest. At most
+   * {@link ScheduledTaskService#MAX_CATCH_UP_RUNS} of the latest missed slots are run.
+   */
+  BACKFILL
+}
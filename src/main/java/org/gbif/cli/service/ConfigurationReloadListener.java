@@ -0,0 +1,22 @@
+package org.gbif.cli.service;
+
+/**
+ * Implemented by services run from a {@link ServiceCommand} that can apply a new configuration without being restarted.
+ * <p/>
+ * If the command is started with {@code --conf-watch} the configuration files are watched and every change that
+ * passes validation is handed to the running service using this interface.
+ *
+ * @param <T> type of the configuration object of the command
+ */
+public interface ConfigurationReloadListener<T> {
+
+  /**
+   * Applies a new, already validated configuration. This is called from the thread watching the configuration files,
+   * never concurrently with itself.
+   *
+   * @param configuration the new configuration object, a different instance from the one the service was started with
+   *
+   * @throws Exception if the new configuration can't be applied, the service should keep its old configuration then
+   */
+  void configurationReloaded(T configuration) throws Exception;
+}
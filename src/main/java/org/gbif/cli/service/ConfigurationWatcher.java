@@ -0,0 +1,134 @@
+package org.gbif.cli.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a set of files using a {@link WatchService} and runs a callback when any of them changed.
+ * <p/>
+ * The directories containing the files are watched rather than the files themselves, so replacing a file (as editors
+ * or Kubernetes config maps do) is noticed as well. After an event the watcher waits for things to settle and only
+ * runs the callback if the size or modification time of one of the files actually changed.
+ */
+public class ConfigurationWatcher extends AbstractExecutionThreadService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+  private final List<Path> files;
+  private final Runnable onChange;
+  private final long quietPeriodMillis;
+  private WatchService watchService;
+  private List<String> lastState;
+
+  /**
+   * @param files             to watch
+   * @param onChange          called from the watcher thread after one or more of the files changed
+   * @param quietPeriodMillis how long to wait after a change before calling back, to catch files written in steps
+   */
+  public ConfigurationWatcher(List<Path> files, Runnable onChange, long quietPeriodMillis) {
+    this.files = new ArrayList<>();
+    for (Path file : files) {
+      this.files.add(file.toAbsolutePath());
+    }
+    this.onChange = onChange;
+    this.quietPeriodMillis = quietPeriodMillis;
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    watchService = FileSystems.getDefault().newWatchService();
+    Set<Path> directories = new HashSet<>();
+    for (Path file : files) {
+      directories.add(file.getParent());
+    }
+    for (Path directory : directories) {
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                         StandardWatchEventKinds.ENTRY_DELETE);
+    }
+    lastState = currentState();
+    LOG.info("Watching configuration files {}", files);
+  }
+
+  @Override
+  protected void run() throws Exception {
+    while (isRunning()) {
+      WatchKey key;
+      try {
+        key = watchService.take();
+        key.pollEvents();
+        key.reset();
+        // Drain the events of a change written in several steps
+        while ((key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null) {
+          key.pollEvents();
+          key.reset();
+        }
+      } catch (ClosedWatchServiceException e) {
+        return;
+      }
+
+      List<String> state = currentState();
+      if (!Objects.equals(state, lastState)) {
+        lastState = state;
+        LOG.info("Configuration files changed");
+        try {
+          onChange.run();
+        } catch (RuntimeException e) {
+          LOG.error("Error handling changed configuration files", e);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void triggerShutdown() {
+    if (watchService == null) {
+      return;
+    }
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      LOG.debug("Error closing watch service", e);
+    }
+  }
+
+  @Override
+  protected Executor executor() {
+    return command -> {
+      Thread thread = new Thread(command, serviceName());
+      thread.setDaemon(true);
+      thread.start();
+    };
+  }
+
+  /**
+   * Sizes and modification times of all files, following symbolic links.
+   */
+  private List<String> currentState() {
+    List<String> state = new ArrayList<>();
+    for (Path file : files) {
+      try {
+        state.add(Files.size(file) + "@" + Files.getLastModifiedTime(file).toMillis());
+      } catch (IOException e) {
+        state.add("missing");
+      }
+    }
+    return state;
+  }
+}
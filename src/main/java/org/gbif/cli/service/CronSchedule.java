@@ -0,0 +1,176 @@
+package org.gbif.cli.service;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Locale;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A schedule defined by a cron expression, see {@link Schedule#cron(String)} for the supported syntax.
+ */
+class CronSchedule implements Schedule {
+
+  // Slots are searched for at most this far ahead, e.g. 30th of February never matches
+  private static final int MAX_YEARS = 5;
+
+  private static final ImmutableList<String> MONTHS =
+    ImmutableList.of("JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC");
+  private static final ImmutableList<String> DAYS = ImmutableList.of("SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT");
+
+  private final String expression;
+  private final BitSet seconds;
+  private final BitSet minutes;
+  private final BitSet hours;
+  private final BitSet daysOfMonth;
+  private final BitSet months;
+  private final BitSet daysOfWeek;
+  private final boolean daysOfMonthRestricted;
+  private final boolean daysOfWeekRestricted;
+
+  CronSchedule(String expression) {
+    this.expression = checkNotNull(expression, "expression can't be null").trim();
+    String[] fields = this.expression.split("\\s+");
+    if (fields.length != 5 && fields.length != 6) {
+      throw new IllegalArgumentException(
+        "Cron expression [" + expression + "] has to have 5 or 6 fields but has " + fields.length);
+    }
+    int offset = fields.length - 5;
+    seconds = offset == 0 ? parseField("0", 0, 59, null) : parseField(fields[0], 0, 59, null);
+    minutes = parseField(fields[offset], 0, 59, null);
+    hours = parseField(fields[offset + 1], 0, 23, null);
+    daysOfMonth = parseField(fields[offset + 2], 1, 31, null);
+    months = parseField(fields[offset + 3], 1, 12, names(MONTHS, 1));
+    daysOfWeek = parseField(fields[offset + 4], 0, 7, names(DAYS, 0));
+    // Sunday is both 0 and 7
+    if (daysOfWeek.get(7)) {
+      daysOfWeek.set(0);
+    }
+    daysOfMonthRestricted = !isWildcard(fields[offset + 2]);
+    daysOfWeekRestricted = !isWildcard(fields[offset + 4]);
+  }
+
+  @Override
+  public ZonedDateTime next(ZonedDateTime time) {
+    ZonedDateTime candidate = time.truncatedTo(ChronoUnit.SECONDS);
+    if (candidate.isBefore(time)) {
+      candidate = candidate.plusSeconds(1);
+    }
+    ZonedDateTime limit = candidate.plusYears(MAX_YEARS);
+
+    while (candidate.isBefore(limit)) {
+      if (!months.get(candidate.getMonthValue())) {
+        candidate = candidate.withDayOfMonth(1).plusMonths(1).truncatedTo(ChronoUnit.DAYS);
+      } else if (!matchesDay(candidate)) {
+        candidate = candidate.plusDays(1).truncatedTo(ChronoUnit.DAYS);
+      } else if (!hours.get(candidate.getHour())) {
+        candidate = candidate.plusHours(1).truncatedTo(ChronoUnit.HOURS);
+      } else if (!minutes.get(candidate.getMinute())) {
+        candidate = candidate.plusMinutes(1).truncatedTo(ChronoUnit.MINUTES);
+      } else if (!seconds.get(candidate.getSecond())) {
+        candidate = candidate.plusSeconds(1);
+      } else {
+        return candidate;
+      }
+    }
+    throw new IllegalStateException(
+      "Cron expression [" + expression + "] doesn't match any time within " + MAX_YEARS + " years");
+  }
+
+  /**
+   * As in standard cron a day matches either field if both the day of the month and the day of the week are
+   * restricted and has to match both (i.e. the restricted one) otherwise.
+   */
+  private boolean matchesDay(ZonedDateTime time) {
+    boolean dayOfMonth = daysOfMonth.get(time.getDayOfMonth());
+    boolean dayOfWeek = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+    if (daysOfMonthRestricted && daysOfWeekRestricted) {
+      return dayOfMonth || dayOfWeek;
+    }
+    return dayOfMonth && dayOfWeek;
+  }
+
+  private static boolean isWildcard(String field) {
+    return "*".equals(field) || "?".equals(field);
+  }
+
+  private static ImmutableMap<String, Integer> names(ImmutableList<String> names, int first) {
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < names.size(); i++) {
+      builder.put(names.get(i), first + i);
+    }
+    return builder.build();
+  }
+
+  private BitSet parseField(String field, int min, int max, ImmutableMap<String, Integer> names) {
+    BitSet values = new BitSet(max + 1);
+    for (String part : Splitter.on(',').split(field)) {
+      int step = 1;
+      String range = part;
+      int slash = part.indexOf('/');
+      if (slash >= 0) {
+        range = part.substring(0, slash);
+        step = parseValue(part.substring(slash + 1), 1, max, null, field);
+      }
+
+      int from;
+      int to;
+      if (isWildcard(range)) {
+        from = min;
+        to = max;
+      } else {
+        int dash = range.indexOf('-');
+        if (dash >= 0) {
+          from = parseValue(range.substring(0, dash), min, max, names, field);
+          to = parseValue(range.substring(dash + 1), min, max, names, field);
+        } else {
+          from = parseValue(range, min, max, names, field);
+          // "5/15" means starting at 5 every 15
+          to = slash >= 0 ? max : from;
+        }
+      }
+      if (from > to) {
+        throw invalid(field, "range " + range + " is reversed");
+      }
+
+      for (int value = from; value <= to; value += step) {
+        values.set(value);
+      }
+    }
+    return values;
+  }
+
+  private int parseValue(String value, int min, int max, ImmutableMap<String, Integer> names, String field) {
+    if (names != null) {
+      Integer named = names.get(value.toUpperCase(Locale.ENGLISH));
+      if (named != null) {
+        return named;
+      }
+    }
+    int parsed;
+    try {
+      parsed = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw invalid(field, "[" + value + "] is not a number");
+    }
+    if (parsed < min || parsed > max) {
+      throw invalid(field, parsed + " is not within " + min + "-" + max);
+    }
+    return parsed;
+  }
+
+  private IllegalArgumentException invalid(String field, String reason) {
+    return new IllegalArgumentException(
+      "Cron expression [" + expression + "] has an invalid field [" + field + "]: " + reason);
+  }
+
+  @Override
+  public String toString() {
+    return "cron " + expression;
+  }
+}
@@ -0,0 +1,29 @@
+package org.gbif.cli.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implemented by services that can finish their in-flight work before they are stopped.
+ * <p/>
+ * On shutdown a {@link ShutdownCoordinator} first asks such a service to stop accepting new work, then waits for the
+ * work in flight to drain and only then stops the service, which closes its resources.
+ */
+public interface Drainable {
+
+  /**
+   * Stops accepting new work, e.g. by pausing consumers or closing listening sockets. Must not block.
+   */
+  void stopAccepting();
+
+  /**
+   * Waits for all work accepted so far to finish.
+   *
+   * @param timeout maximum time to wait
+   * @param unit    of the timeout
+   *
+   * @return true if all work finished in time, false otherwise
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,193 @@
+package org.gbif.cli.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import org.gbif.cli.metrics.MetricsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Elects a leader among processes on the same host using an exclusive lock on a shared file.
+ * <p/>
+ * The operating system releases the lock when the leader dies, so a follower takes over the next time it tries to
+ * acquire it. The leader renews its leadership on every attempt by checking that its lock is still valid and that the
+ * lock file hasn't been deleted or replaced in the meantime.
+ * <p/>
+ * The lock file also records the latest slot claimed by any leader, so a slot isn't run twice when leadership changes
+ * hands around it.
+ */
+final class FileLockLeaderElection implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileLockLeaderElection.class);
+
+  private final Path lockFile;
+  private final String name;
+  private final Counter acquired;
+  private final Counter lost;
+
+  private FileChannel channel;
+  private FileLock lock;
+  private Object fileKey;
+
+  FileLockLeaderElection(Path lockFile, String name) {
+    this.lockFile = lockFile;
+    this.name = name;
+    acquired = Counter.builder("cli_scheduled_leadership_acquired_total")
+      .description("Number of times this process became the leader among replicas of a scheduled service")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    lost = Counter.builder("cli_scheduled_leadership_lost_total")
+      .description("Number of times this process lost the leadership among replicas of a scheduled service")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    // A gauge of a previous election, e.g. before the service was restarted, would otherwise be kept
+    Gauge previous = MetricsManager.REGISTRY.find("cli_scheduled_leader").tag("service", name).gauge();
+    if (previous != null) {
+      MetricsManager.REGISTRY.remove(previous);
+    }
+    Gauge.builder("cli_scheduled_leader", this, election -> election.isLeader() ? 1 : 0)
+      .description("1 if this process is the leader among replicas of a scheduled service, 0 otherwise")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+  }
+
+  /**
+   * @return true if this process held the lock the last time it was acquired or renewed
+   */
+  synchronized boolean isLeader() {
+    return lock != null;
+  }
+
+  /**
+   * Renews the leadership if this process is the leader or tries to become the leader otherwise.
+   *
+   * @return true if this process is the leader
+   */
+  synchronized boolean tryAcquire() {
+    if (lock != null) {
+      if (lock.isValid() && Objects.equals(fileKey, currentFileKey())) {
+        return true;
+      }
+      LOG.warn("[{}] lost the leadership, lock file [{}] was released or replaced", name, lockFile);
+      lost.increment();
+      release();
+    }
+
+    try {
+      Path directory = lockFile.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Another service in this JVM is the leader
+      lock = null;
+    } catch (IOException e) {
+      LOG.warn("Unable to lock [{}] for [{}]", lockFile, name, e);
+      lock = null;
+    }
+
+    if (lock == null) {
+      release();
+      return false;
+    }
+    fileKey = currentFileKey();
+    acquired.increment();
+    LOG.info("[{}] became the leader using lock file [{}]", name, lockFile);
+    return true;
+  }
+
+  /**
+   * Claims a slot for this process if it is the leader and no leader has claimed this or a later slot before.
+   *
+   * @param slot to claim
+   *
+   * @return true if the slot should be run by this process
+   */
+  synchronized boolean claim(ZonedDateTime slot) {
+    if (!tryAcquire()) {
+      return false;
+    }
+    try {
+      ZonedDateTime claimed = readClaimed();
+      if (claimed != null && !slot.isAfter(claimed)) {
+        LOG.debug("Slot {} of [{}] was already claimed by a previous leader", slot, name);
+        return false;
+      }
+      byte[] content = slot.toString().getBytes(StandardCharsets.UTF_8);
+      channel.truncate(0);
+      channel.write(ByteBuffer.wrap(content), 0);
+      channel.force(false);
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Unable to record slot {} of [{}] in [{}], running it anyway", slot, name, lockFile, e);
+      return true;
+    }
+  }
+
+  private ZonedDateTime readClaimed() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 1024));
+    channel.read(buffer, 0);
+    String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+    if (content.isEmpty()) {
+      return null;
+    }
+    try {
+      return ZonedDateTime.parse(content);
+    } catch (DateTimeParseException e) {
+      LOG.warn("Ignoring invalid content of lock file [{}]", lockFile);
+      return null;
+    }
+  }
+
+  private Object currentFileKey() {
+    try {
+      return Files.readAttributes(lockFile, BasicFileAttributes.class).fileKey();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void release() {
+    try {
+      if (lock != null && lock.isValid()) {
+        lock.release();
+      }
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to release lock file [{}]", lockFile, e);
+    } finally {
+      lock = null;
+      channel = null;
+      fileKey = null;
+    }
+  }
+
+  /**
+   * Gives up the leadership, if held, so another process can take over.
+   */
+  @Override
+  public synchronized void close() {
+    if (lock != null) {
+      LOG.info("[{}] gives up the leadership", name);
+    }
+    release();
+  }
+}
@@ -0,0 +1,56 @@
+package org.gbif.cli.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Slots every {@code interval} before and after an anchor, optionally leaving out the slots of a period just before
+ * the anchor.
+ */
+class FixedRateSchedule implements Schedule {
+
+  private final Instant anchor;
+  private final long intervalNanos;
+  // Slots from here up to the anchor are left out, null to keep all of them
+  private final Instant pausedFrom;
+
+  FixedRateSchedule(Instant anchor, Duration interval) {
+    this(anchor, interval, null);
+  }
+
+  private FixedRateSchedule(Instant anchor, Duration interval, Instant pausedFrom) {
+    this.anchor = checkNotNull(anchor, "anchor can't be null");
+    checkArgument(!interval.isNegative() && !interval.isZero(), "interval has to be positive");
+    this.intervalNanos = interval.toNanos();
+    this.pausedFrom = pausedFrom;
+  }
+
+  /**
+   * Creates a schedule whose next slot after {@code pausedFrom} is the anchor. Slots before {@code pausedFrom} are
+   * kept, so missed runs can still be found on the grid of the anchor.
+   */
+  static FixedRateSchedule resumingAt(Instant anchor, Duration interval, Instant pausedFrom) {
+    checkNotNull(pausedFrom, "pausedFrom can't be null");
+    return new FixedRateSchedule(anchor, interval, pausedFrom);
+  }
+
+  @Override
+  public ZonedDateTime next(ZonedDateTime time) {
+    long sinceAnchor = Duration.between(anchor, time.toInstant()).toNanos();
+    long intervals = -Math.floorDiv(-sinceAnchor, intervalNanos);
+    Instant slot = anchor.plusNanos(intervals * intervalNanos);
+    if (pausedFrom != null && !slot.isBefore(pausedFrom) && slot.isBefore(anchor)) {
+      slot = anchor;
+    }
+    return slot.atZone(time.getZone());
+  }
+
+  @Override
+  public String toString() {
+    return "every " + Duration.ofNanos(intervalNanos) + (pausedFrom == null ? " from " : " resuming at ") + anchor;
+  }
+}
@@ -0,0 +1,85 @@
+package org.gbif.cli.service;
+
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.util.concurrent.Service;
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Health checks of a service for orchestrators, served on the metrics server:
+ * <ul>
+ *   <li>{@code /health/live} responds with 200 unless the service failed, so a broken process is restarted.</li>
+ *   <li>{@code /health/ready} responds with 200 only while the service is running and all readiness checks pass, so
+ *   traffic is only routed to it once it can take load.</li>
+ * </ul>
+ * Both respond with 503 otherwise and list the state of the service and the result of each check.
+ */
+final class HealthEndpoints {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HealthEndpoints.class);
+
+  private final Service service;
+  private final Map<String, ReadinessCheck> checks;
+
+  HealthEndpoints(Service service, Map<String, ReadinessCheck> checks) {
+    this.service = checkNotNull(service, "service can't be null");
+    this.checks = new LinkedHashMap<>(checkNotNull(checks, "checks can't be null"));
+  }
+
+  void register() {
+    MetricsManager.registerEndpoint("/health/live", exchange -> {
+      Service.State state = service.state();
+      respond(exchange, state != Service.State.FAILED, "service " + state + "\n");
+    });
+    MetricsManager.registerEndpoint("/health/ready", exchange -> {
+      Service.State state = service.state();
+      boolean ready = state == Service.State.RUNNING;
+      StringBuilder sb = new StringBuilder("service ").append(state).append('\n');
+      // Checks are only evaluated once the service runs, they may depend on what it started
+      if (ready) {
+        for (Map.Entry<String, ReadinessCheck> check : checks.entrySet()) {
+          ready &= appendCheck(sb, check.getKey(), check.getValue());
+        }
+      }
+      respond(exchange, ready, sb.toString());
+    });
+  }
+
+  private static boolean appendCheck(StringBuilder sb, String name, ReadinessCheck check) {
+    sb.append(name).append(' ');
+    try {
+      if (check.isReady()) {
+        sb.append("UP\n");
+        return true;
+      }
+      sb.append("DOWN\n");
+    } catch (Exception e) {
+      LOG.debug("Readiness check [{}] failed", name, e);
+      sb.append("DOWN ").append(e.getMessage()).append('\n');
+    }
+    return false;
+  }
+
+  private static void respond(HttpExchange exchange, boolean healthy, String body) throws IOException {
+    try {
+      byte[] response = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+      exchange.sendResponseHeaders(healthy ? 200 : 503, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
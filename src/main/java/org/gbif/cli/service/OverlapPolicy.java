@@ -0,0 +1,59 @@
+package org.gbif.cli.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Defines what a {@link ScheduledTaskService} does when a run is due while previous runs are still in progress.
+ */
+public final class OverlapPolicy {
+
+  private final int maxConcurrent;
+  private final int maxQueued;
+
+  private OverlapPolicy(int maxConcurrent, int maxQueued) {
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+  }
+
+  /**
+   * Skips runs that are due while the previous run is still in progress.
+   */
+  public static OverlapPolicy skip() {
+    return new OverlapPolicy(1, 0);
+  }
+
+  /**
+   * Queues up to {@code maxQueued} runs that are due while the previous run is still in progress, they are run one
+   * after the other as soon as it finishes. Further runs are skipped.
+   *
+   * @param maxQueued maximum number of runs waiting, 0 behaves like {@link #skip()}
+   */
+  public static OverlapPolicy queue(int maxQueued) {
+    checkArgument(maxQueued >= 0, "maxQueued can't be negative");
+    return new OverlapPolicy(1, maxQueued);
+  }
+
+  /**
+   * Starts runs as soon as they are due even if previous runs are still in progress as long as no more than
+   * {@code maxConcurrent} runs are in progress at the same time. Further runs are skipped.
+   *
+   * @param maxConcurrent maximum number of runs in progress at the same time
+   */
+  public static OverlapPolicy concurrent(int maxConcurrent) {
+    checkArgument(maxConcurrent > 0, "maxConcurrent has to be positive");
+    return new OverlapPolicy(maxConcurrent, 0);
+  }
+
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  public int getMaxQueued() {
+    return maxQueued;
+  }
+
+  @Override
+  public String toString() {
+    return "OverlapPolicy{maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued + '}';
+  }
+}
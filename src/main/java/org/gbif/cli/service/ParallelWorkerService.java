@@ -0,0 +1,249 @@
+package org.gbif.cli.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import org.gbif.cli.VirtualThreads;
+import org.gbif.cli.metrics.MetricsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Service that processes items submitted to it in parallel on a fixed number of workers.
+ * <p/>
+ * Items wait in a bounded queue for a free worker, once it is full the {@link Backpressure} configured in the
+ * {@link WorkerPoolConfiguration} applies. Workers are platform threads or, if configured and supported by the JVM,
+ * virtual threads. An exception thrown while processing an item is passed to {@link #onFailure(Object, Exception)} and
+ * doesn't affect other items.
+ * <p/>
+ * Subclasses implement {@link #process(Object)} and usually start whatever submits items, e.g. a message consumer, in
+ * {@link #onStart()}. On shutdown no further items are accepted and all items submitted before are processed before
+ * {@link #onStop()} is called.
+ * <p/>
+ * The following metrics are registered, all tagged with the {@link #serviceName()}, the gauges are meant to be used
+ * for autoscaling:
+ * <ul>
+ *   <li>{@code cli_worker_queue_depth}: items waiting for a worker</li>
+ *   <li>{@code cli_worker_active}: workers processing an item</li>
+ *   <li>{@code cli_worker_utilization}: the ratio of active workers to all workers</li>
+ *   <li>{@code cli_worker_item_duration_seconds}: time taken to process an item</li>
+ *   <li>{@code cli_worker_failures_total}: items whose processing threw an exception</li>
+ *   <li>{@code cli_worker_rejected_total}: items rejected because the queue was full or the service stopping</li>
+ * </ul>
+ *
+ * @param <T> type of the items processed
+ */
+public abstract class ParallelWorkerService<T> extends AbstractIdleService implements Drainable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelWorkerService.class);
+
+  private final WorkerPoolConfiguration configuration;
+  private volatile boolean accepting;
+  private volatile ThreadPoolExecutor executor;
+
+  private Timer itemTimer;
+  private Counter failures;
+  private Counter rejected;
+
+  protected ParallelWorkerService(WorkerPoolConfiguration configuration) {
+    this.configuration = checkNotNull(configuration, "configuration can't be null");
+  }
+
+  /**
+   * Processes a single item on one of the workers.
+   *
+   * @param item to process
+   *
+   * @throws Exception passed on to {@link #onFailure(Object, Exception)}
+   */
+  protected abstract void process(T item) throws Exception;
+
+  /**
+   * Called when processing an item failed. Logs the exception by default.
+   *
+   * @param item      that failed
+   * @param exception thrown by {@link #process(Object)}
+   */
+  protected void onFailure(T item, Exception exception) {
+    LOG.error("Processing [{}] in [{}] failed", item, serviceName(), exception);
+  }
+
+  /**
+   * Called once the workers are ready to accept items.
+   */
+  protected void onStart() throws Exception {
+  }
+
+  /**
+   * Called once all accepted items have been processed on shutdown.
+   */
+  protected void onStop() throws Exception {
+  }
+
+  /**
+   * Submits an item to be processed by one of the workers. What happens while the queue is full depends on the
+   * configured {@link Backpressure}.
+   *
+   * @param item to process
+   *
+   * @return true if the item was accepted, false if it was rejected because the queue was full or the service is
+   * stopping
+   *
+   * @throws IllegalStateException if the service hasn't been started yet
+   */
+  public final boolean submit(T item) {
+    checkNotNull(item, "item can't be null");
+    checkState(executor != null, "Service [%s] hasn't been started", serviceName());
+    if (!accepting) {
+      rejected.increment();
+      return false;
+    }
+    try {
+      executor.execute(() -> run(item));
+      return true;
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      LOG.debug("Rejected [{}] in [{}]", item, serviceName());
+      return false;
+    }
+  }
+
+  /**
+   * @return the configuration of the worker pool
+   */
+  protected final WorkerPoolConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  @Override
+  protected final void startUp() throws Exception {
+    BlockingQueue<Runnable> queue =
+      configuration.queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(configuration.queueSize);
+    ThreadPoolExecutor pool =
+      new ThreadPoolExecutor(configuration.threads, configuration.threads, 0, TimeUnit.MILLISECONDS, queue,
+                             VirtualThreads.threadFactory(serviceName() + "-worker", configuration.virtualThreads),
+                             rejectedExecutionHandler(configuration.backpressure));
+    registerMetrics(pool);
+    executor = pool;
+    accepting = true;
+    LOG.info("Started [{}] with {}", serviceName(), configuration);
+    onStart();
+  }
+
+  /**
+   * Stops accepting items, subclasses overriding this to stop their sources of items have to call this method.
+   */
+  @Override
+  public void stopAccepting() {
+    accepting = false;
+  }
+
+  @Override
+  public final boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+    if (executor == null) {
+      return true;
+    }
+    executor.shutdown();
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  protected final void shutDown() throws Exception {
+    stopAccepting();
+    while (!awaitDrained(1, TimeUnit.MINUTES)) {
+      LOG.info("Waiting for [{}] to process {} queued and {} active items", serviceName(), executor.getQueue().size(),
+               executor.getActiveCount());
+    }
+    onStop();
+  }
+
+  private void run(T item) {
+    long start = System.nanoTime();
+    try {
+      process(item);
+    } catch (Exception e) {
+      failures.increment();
+      onFailure(item, e);
+    } finally {
+      itemTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private static RejectedExecutionHandler rejectedExecutionHandler(Backpressure backpressure) {
+    switch (backpressure) {
+      case REJECT:
+        return new ThreadPoolExecutor.AbortPolicy();
+      case CALLER_RUNS:
+        // Unlike ThreadPoolExecutor.CallerRunsPolicy this doesn't silently discard items once shut down
+        return (runnable, executor) -> {
+          if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+          }
+          runnable.run();
+        };
+      default:
+        return (runnable, executor) -> {
+          if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+          }
+          try {
+            executor.getQueue().put(runnable);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+          }
+          // The workers may have exited while waiting, the item would never be run then
+          if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+            throw new RejectedExecutionException("Executor has been shut down");
+          }
+        };
+    }
+  }
+
+  private void registerMetrics(ThreadPoolExecutor pool) {
+    String name = serviceName();
+    // Gauges of a previous start or another service with the same name would otherwise stay bound to their pool
+    for (String gauge : new String[] {"cli_worker_queue_depth", "cli_worker_active", "cli_worker_utilization"}) {
+      Gauge previous = MetricsManager.REGISTRY.find(gauge).tag("service", name).gauge();
+      if (previous != null) {
+        MetricsManager.REGISTRY.remove(previous);
+      }
+    }
+    Gauge.builder("cli_worker_queue_depth", pool, p -> p.getQueue().size())
+      .description("Items waiting for a worker")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    Gauge.builder("cli_worker_active", pool, ThreadPoolExecutor::getActiveCount)
+      .description("Workers processing an item")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    Gauge.builder("cli_worker_utilization", pool, p -> (double) p.getActiveCount() / p.getMaximumPoolSize())
+      .description("Ratio of workers processing an item to all workers")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    itemTimer = Timer.builder("cli_worker_item_duration_seconds")
+      .description("Time taken to process an item")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    failures = Counter.builder("cli_worker_failures_total")
+      .description("Items whose processing threw an exception")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    rejected = Counter.builder("cli_worker_rejected_total")
+      .description("Items rejected because the queue was full or the service was stopping")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+  }
+}
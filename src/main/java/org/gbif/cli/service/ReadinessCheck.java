@@ -0,0 +1,19 @@
+package org.gbif.cli.service;
+
+/**
+ * Decides whether a service run from a {@link ServiceCommand} can take load, in addition to it running, e.g. because
+ * its caches are warm or a downstream service is reachable.
+ * <p/>
+ * Checks are evaluated on every request to {@code /health/ready} on the metrics server, so they should be fast and
+ * not block.
+ */
+@FunctionalInterface
+public interface ReadinessCheck {
+
+  /**
+   * @return true if ready
+   *
+   * @throws Exception treated as not ready, its message is included in the response
+   */
+  boolean isReady() throws Exception;
+}
@@ -0,0 +1,68 @@
+package org.gbif.cli.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Defines when a {@link ScheduledTaskService} runs.
+ */
+public interface Schedule {
+
+  /**
+   * Finds the first slot of this schedule at or after the given time.
+   *
+   * @param time to start searching from
+   *
+   * @return the next slot, in the same time zone as the given time
+   */
+  ZonedDateTime next(ZonedDateTime time);
+
+  /**
+   * Runs at a fixed rate aligned to a time of day: at {@code start} and then every {@code interval} before and after
+   * that. Intervals that are not a divisor of a day therefore drift relative to the start time from day to day.
+   *
+   * @param start    time of day of one of the slots in the default time zone, if null the schedule starts right away
+   * @param interval between runs, may be shorter than a minute
+   *
+   * @return the schedule
+   */
+  static Schedule fixedRate(LocalTime start, Duration interval) {
+    if (start == null) {
+      return every(interval);
+    }
+    return new FixedRateSchedule(LocalDate.now().atTime(start).atZone(ZoneId.systemDefault()).toInstant(), interval);
+  }
+
+  /**
+   * Runs right away and then every {@code interval}.
+   *
+   * @param interval between runs, may be shorter than a minute
+   *
+   * @return the schedule
+   */
+  static Schedule every(Duration interval) {
+    return new FixedRateSchedule(ZonedDateTime.now().toInstant(), interval);
+  }
+
+  /**
+   * Runs according to a cron expression in the default time zone.
+   * <p/>
+   * Expressions have either the five standard fields <em>minute hour day-of-month month day-of-week</em> or an
+   * additional leading <em>second</em> field. Every field accepts {@code *}, single values, ranges like {@code 1-5},
+   * steps like {@code *}{@code /15} or {@code 10-50/20} and comma separated lists of those. Months and days of the week
+   * may also be given by their English three letter names, Sunday is both 0 and 7. As in standard cron a slot matches
+   * either the day of the month or the day of the week if both are restricted.
+   *
+   * @param expression the cron expression, e.g. {@code 0 2 * * MON-FRI} or {@code *}{@code /10 * * * * *}
+   *
+   * @return the schedule
+   *
+   * @throws IllegalArgumentException if the expression is invalid
+   */
+  static Schedule cron(String expression) {
+    return new CronSchedule(expression);
+  }
+}
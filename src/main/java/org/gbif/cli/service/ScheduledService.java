@@ -1,60 +1,73 @@
 package org.gbif.cli.service;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.util.concurrent.AbstractIdleService;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 
 /**
  * Service that can be scheduled to start at a certain time and then run on a fixed schedule.
- * See {@link ScheduledExecutorService#scheduleAtFixedRate(Runnable, long, long, TimeUnit)}
+ * <p/>
+ * The first run is at {@link #getTimeStart()} today or, if that has already passed, tomorrow, and then every
+ * {@link #getIntervalInMinutes()} minutes. Without a start time it runs right away, or one interval after the last
+ * successful run if that is known from the {@link #getStateFile()}. Runs missed since the last successful run are
+ * those on the grid of the start time and interval, caught up on according to the {@link #getCatchUpPolicy()}.
+ * <p/>
+ * Extend {@link ScheduledTaskService} instead for cron expressions, intervals shorter than a minute or slots aligned to
+ * a time of day.
  */
-public abstract class ScheduledService extends AbstractIdleService {
-
-  private ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+public abstract class ScheduledService extends ScheduledTaskService {
 
   /**
-   * Method called from @{link #getTimeStart}
+   * Method called for every run by the default {@link #scheduledRun(ZonedDateTime)}.
    */
   protected abstract void scheduledRun();
 
-  /**
-   * Method called when this module is destroyed.
-   */
-  protected abstract void scheduledDestroy();
-
   /**
    * At what time the scheduling should start.
    * Calling this method multiple time may result in different values if the timeStart is LocalTime.now().
    *
-   * @return timeStart at the moment of the call
+   * @return timeStart at the moment of the call, null to start right away
    */
   protected abstract LocalTime getTimeStart();
 
   /**
    * Interval in minutes this service should run after {@link #getTimeStart()}
-   * @return
+   *
+   * @return interval in minutes
    */
   protected abstract int getIntervalInMinutes();
 
+  /**
+   * Calls {@link #scheduledRun()}.
+   *
+   * @param scheduledTime the slot this run is for, which lies in the past if it's caught up on
+   */
   @Override
-  final protected void startUp() throws Exception {
-    LocalTime timeStart =  getTimeStart();
-    long initialDelay = timeStart == null ? 0 : LocalTime.now().until(timeStart, ChronoUnit.MINUTES);
-
-    //if the delay is passed
-    if (initialDelay < 0) {
-      initialDelay = initialDelay + ChronoUnit.DAYS.getDuration().toMinutes();
-    }
-    scheduler.scheduleAtFixedRate(this::scheduledRun, initialDelay, getIntervalInMinutes(), TimeUnit.MINUTES);
+  protected void scheduledRun(ZonedDateTime scheduledTime) {
+    scheduledRun();
   }
 
   @Override
-  final protected void shutDown() throws Exception {
-    scheduler.shutdown();
-    scheduledDestroy();
+  protected final Schedule getSchedule() {
+    LocalTime timeStart = getTimeStart();
+    Duration interval = Duration.ofMinutes(getIntervalInMinutes());
+    if (timeStart == null) {
+      ZonedDateTime lastSuccessfulRun = getLastSuccessfulRun();
+      // Continue where the previous process left off instead of running right away
+      return lastSuccessfulRun == null
+        ? Schedule.every(interval)
+        : new FixedRateSchedule(lastSuccessfulRun.toInstant(), interval);
+    }
+
+    ZonedDateTime now = ZonedDateTime.now();
+    ZonedDateTime firstRun = LocalDate.now().atTime(timeStart).atZone(ZoneId.systemDefault());
+    // If the start time has passed the first run is tomorrow
+    if (firstRun.isBefore(now)) {
+      firstRun = firstRun.plusDays(1);
+    }
+    // The slots before now stay on the grid of the start time, so runs missed since the last successful run are found
+    return FixedRateSchedule.resumingAt(firstRun.toInstant(), interval, now.toInstant());
   }
 }
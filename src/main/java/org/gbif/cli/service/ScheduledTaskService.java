@@ -0,0 +1,480 @@
+package org.gbif.cli.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.gbif.cli.VirtualThreads;
+import org.gbif.cli.metrics.MetricsManager;
+import org.gbif.cli.metrics.ScheduledRunEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Service that runs {@link #scheduledRun(ZonedDateTime)} for every slot of its {@link #getSchedule()}, e.g. a cron
+ * expression or a fixed rate that may be shorter than a minute.
+ * <p/>
+ * Runs don't block the scheduling of later runs, they are executed on separate worker threads (virtual threads if
+ * {@link #useVirtualThreads()} and the JVM supports them). What happens if a run is due while previous runs are still
+ * in progress is defined by the {@link #getOverlapPolicy()}. An exception thrown by a run is logged and doesn't cancel
+ * later runs.
+ * <p/>
+ * The slot of the last successful run can be persisted in a {@link #getStateFile()}. Runs missed while no process was
+ * running are then skipped, run once or run one by one on startup depending on the {@link #getCatchUpPolicy()}.
+ * <p/>
+ * Every run is recorded as a {@link ScheduledRunEvent} in flight recordings.
+ * <p/>
+ * Replicas on the same host can share a {@link #getLockFile()} so only one of them runs each slot.
+ * <p/>
+ * On shutdown no further runs are started and runs in progress are waited for before {@link #scheduledDestroy()} is
+ * called.
+ * <p/>
+ * The following metrics are registered, all tagged with the {@link #serviceName()}:
+ * <ul>
+ *   <li>{@code cli_scheduled_run_duration_seconds}: histogram of the run durations</li>
+ *   <li>{@code cli_scheduled_run_lag_seconds}: delay between the scheduled and the actual start of runs, including
+ *   jitter and time spent queued</li>
+ *   <li>{@code cli_scheduled_run_overruns_total}: runs still in progress when the next slot was due</li>
+ *   <li>{@code cli_scheduled_run_skipped_total}: slots skipped because of the {@link OverlapPolicy}</li>
+ *   <li>{@code cli_scheduled_run_failures_total}: runs that threw an exception</li>
+ *   <li>{@code cli_scheduled_leader}, {@code cli_scheduled_leadership_acquired_total} and
+ *   {@code cli_scheduled_leadership_lost_total}: leadership among replicas if a {@link #getLockFile()} is used</li>
+ * </ul>
+ */
+public abstract class ScheduledTaskService extends AbstractIdleService implements Drainable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScheduledTaskService.class);
+
+  /**
+   * Maximum number of missed runs caught up on with {@link CatchUpPolicy#BACKFILL}, older ones are dropped.
+   */
+  public static final int MAX_CATCH_UP_RUNS = 1000;
+
+  private static final String LAST_SUCCESSFUL_RUN = "lastSuccessfulRun";
+
+  private final Object lock = new Object();
+  // Slots waiting for a run in progress to finish, guarded by lock
+  private final Deque<ZonedDateTime> queued = new ArrayDeque<>();
+  // Number of runs in progress, guarded by lock
+  private int active;
+  private volatile boolean stopping;
+
+  private ScheduledExecutorService trigger;
+  private ExecutorService workers;
+  private Schedule schedule;
+  private OverlapPolicy overlapPolicy;
+  private Duration jitter;
+
+  private final Object stateLock = new Object();
+  private Path stateFile;
+  // The slot of the latest successful run, guarded by stateLock
+  private ZonedDateTime lastSuccessfulRun;
+
+  private FileLockLeaderElection leaderElection;
+
+  private Timer durationTimer;
+  private Timer lagTimer;
+  private Counter overruns;
+  private Counter skipped;
+  private Counter failures;
+
+  /**
+   * Method called for every slot of the {@link #getSchedule()}, including missed slots caught up on.
+   *
+   * @param scheduledTime the slot this run is for, which lies in the past if it's caught up on
+   */
+  protected abstract void scheduledRun(ZonedDateTime scheduledTime);
+
+  /**
+   * Method called when this module is destroyed.
+   */
+  protected abstract void scheduledDestroy();
+
+  /**
+   * Defines when this service runs, called once on startup.
+   *
+   * @return the schedule, e.g. {@code Schedule.cron("0 2 * * *")} or {@code Schedule.every(Duration.ofSeconds(10))}
+   */
+  protected abstract Schedule getSchedule();
+
+  /**
+   * @return the slot of the latest successful run, read from the {@link #getStateFile()} on startup, null if unknown
+   */
+  protected final ZonedDateTime getLastSuccessfulRun() {
+    synchronized (stateLock) {
+      return lastSuccessfulRun;
+    }
+  }
+
+  /**
+   * File the time of the last successful run is stored in, so it is known after a restart which runs were missed.
+   *
+   * @return the state file, null by default which disables persisting state
+   */
+  protected Path getStateFile() {
+    return null;
+  }
+
+  /**
+   * File shared by replicas of this service on the same host, only the replica holding a lock on it runs the slots.
+   * <p/>
+   * Every replica tries to acquire the lock when a slot is due, so another replica takes over at the next slot if the
+   * leader dies or stops. The latest slot run is recorded in the file so no slot is run twice.
+   *
+   * @return the lock file, null by default which makes every replica run every slot
+   */
+  protected Path getLockFile() {
+    return null;
+  }
+
+  /**
+   * Defines what happens on startup with runs that were missed while no process was running, which requires a
+   * {@link #getStateFile()}.
+   *
+   * @return the policy, {@link CatchUpPolicy#SKIP} by default
+   */
+  protected CatchUpPolicy getCatchUpPolicy() {
+    return CatchUpPolicy.SKIP;
+  }
+
+  /**
+   * Every run is delayed by a random duration up to this maximum, e.g. to avoid many instances hitting the same
+   * resource at the same time.
+   *
+   * @return the maximum delay, zero by default
+   */
+  protected Duration getJitter() {
+    return Duration.ZERO;
+  }
+
+  /**
+   * Defines what happens when a run is due while previous runs are still in progress.
+   *
+   * @return the policy, by default a single run is queued
+   */
+  protected OverlapPolicy getOverlapPolicy() {
+    return OverlapPolicy.queue(1);
+  }
+
+  /**
+   * @return true to execute runs on virtual threads if the JVM supports them, false by default
+   */
+  protected boolean useVirtualThreads() {
+    return false;
+  }
+
+  @Override
+  protected final void startUp() throws Exception {
+    ZonedDateTime start = ZonedDateTime.now();
+    stateFile = getStateFile();
+    lastSuccessfulRun = stateFile == null ? null : readState(stateFile);
+    schedule = getSchedule();
+    overlapPolicy = getOverlapPolicy();
+    jitter = getJitter();
+    stopping = false;
+    registerMetrics();
+    Path lockFile = getLockFile();
+    leaderElection = lockFile == null ? null : new FileLockLeaderElection(lockFile, serviceName());
+
+    trigger = Executors.newSingleThreadScheduledExecutor(VirtualThreads.threadFactory(serviceName() + "-trigger", false));
+    workers = Executors.newCachedThreadPool(VirtualThreads.threadFactory(serviceName() + "-run", useVirtualThreads()));
+    LOG.info("Scheduling [{}] {} with {}", serviceName(), schedule, overlapPolicy);
+
+    List<ZonedDateTime> missed = missedSlots(start);
+    if (!missed.isEmpty() && leaderElection != null && !leaderElection.tryAcquire()) {
+      LOG.info("[{}] missed {} runs, leaving it to the leader to catch up on them", serviceName(), missed.size());
+    } else if (!missed.isEmpty()) {
+      CatchUpPolicy catchUpPolicy = getCatchUpPolicy();
+      LOG.info("[{}] missed {} runs since {}, catch up policy is {}", serviceName(), missed.size(), lastSuccessfulRun,
+               catchUpPolicy);
+      if (catchUpPolicy == CatchUpPolicy.RUN_ONCE) {
+        catchUp(missed.subList(missed.size() - 1, missed.size()));
+      } else if (catchUpPolicy == CatchUpPolicy.BACKFILL) {
+        catchUp(missed);
+      }
+    }
+    scheduleNext(start);
+  }
+
+  @Override
+  public void stopAccepting() {
+    stopping = true;
+    if (trigger != null) {
+      trigger.shutdownNow();
+    }
+    synchronized (lock) {
+      queued.clear();
+    }
+  }
+
+  @Override
+  public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+    if (workers == null) {
+      return true;
+    }
+    workers.shutdown();
+    return workers.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  protected final void shutDown() throws Exception {
+    stopAccepting();
+    while (!awaitDrained(1, TimeUnit.MINUTES)) {
+      LOG.info("Waiting for scheduled runs of [{}] to finish", serviceName());
+    }
+    if (leaderElection != null) {
+      leaderElection.close();
+    }
+    scheduledDestroy();
+  }
+
+  private void registerMetrics() {
+    String name = serviceName();
+    durationTimer = Timer.builder("cli_scheduled_run_duration_seconds")
+      .description("Duration of scheduled runs")
+      .tag("service", name)
+      .publishPercentileHistogram()
+      .register(MetricsManager.REGISTRY);
+    lagTimer = Timer.builder("cli_scheduled_run_lag_seconds")
+      .description("Delay between the scheduled and the actual start of scheduled runs")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    overruns = Counter.builder("cli_scheduled_run_overruns_total")
+      .description("Scheduled runs still in progress when the next run was due")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    skipped = Counter.builder("cli_scheduled_run_skipped_total")
+      .description("Scheduled runs skipped because previous runs were still in progress")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+    failures = Counter.builder("cli_scheduled_run_failures_total")
+      .description("Scheduled runs that threw an exception")
+      .tag("service", name)
+      .register(MetricsManager.REGISTRY);
+  }
+
+  private void scheduleNext(ZonedDateTime from) {
+    ZonedDateTime slot = schedule.next(from);
+    long delay = Duration.between(ZonedDateTime.now(), slot).toNanos();
+    if (!jitter.isZero() && !jitter.isNegative()) {
+      delay += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+    }
+    try {
+      trigger.schedule(() -> trigger(slot), Math.max(0, delay), TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // Shutting down
+    }
+  }
+
+  private void trigger(ZonedDateTime slot) {
+    if (stopping) {
+      return;
+    }
+    // Slots missed because the trigger fired late are dropped instead of firing all at once
+    ZonedDateTime now = ZonedDateTime.now();
+    ZonedDateTime afterSlot = slot.plusNanos(1);
+    scheduleNext(afterSlot.isAfter(now) ? afterSlot : now);
+
+    if (leaderElection != null && !leaderElection.claim(slot)) {
+      LOG.debug("Not running [{}] for {}, another replica is the leader", serviceName(), slot);
+      return;
+    }
+
+    synchronized (lock) {
+      if (active < overlapPolicy.getMaxConcurrent()) {
+        active++;
+        submit(slot);
+      } else if (queued.size() < overlapPolicy.getMaxQueued()) {
+        LOG.debug("Queueing run of [{}] for {}, previous run still in progress", serviceName(), slot);
+        queued.add(slot);
+      } else {
+        LOG.warn("Skipping run of [{}] for {}, {} runs still in progress", serviceName(), slot, active);
+        skipped.increment();
+      }
+    }
+  }
+
+  // Has to be called holding the lock with active already incremented
+  private void submit(ZonedDateTime slot) {
+    try {
+      workers.execute(() -> {
+        try {
+          execute(slot, false);
+        } finally {
+          finished();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      active--;
+    }
+  }
+
+  // Starts the next queued run if there is one
+  private void finished() {
+    synchronized (lock) {
+      ZonedDateTime next = stopping ? null : queued.poll();
+      if (next == null) {
+        active--;
+      } else {
+        submit(next);
+      }
+    }
+  }
+
+  private void catchUp(List<ZonedDateTime> slots) {
+    synchronized (lock) {
+      active++;
+      try {
+        workers.execute(() -> {
+          try {
+            for (ZonedDateTime slot : slots) {
+              if (stopping) {
+                return;
+              }
+              if (leaderElection == null || leaderElection.claim(slot)) {
+                execute(slot, true);
+              }
+            }
+          } finally {
+            finished();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        active--;
+      }
+    }
+  }
+
+  private void execute(ZonedDateTime slot, boolean catchUp) {
+    ScheduledRunEvent event = new ScheduledRunEvent();
+    event.begin();
+    long start = System.nanoTime();
+    ZonedDateTime started = ZonedDateTime.now();
+    long lag = Math.max(0, Duration.between(slot, started).toNanos());
+    if (!catchUp) {
+      lagTimer.record(lag, TimeUnit.NANOSECONDS);
+    }
+    boolean success = false;
+    try {
+      LOG.debug("Running [{}] for {}", serviceName(), slot);
+      scheduledRun(slot);
+      success = true;
+    } catch (Exception e) {
+      failures.increment();
+      LOG.error("Scheduled run of [{}] for {} failed", serviceName(), slot, e);
+    } finally {
+      long nanos = System.nanoTime() - start;
+      durationTimer.record(nanos, TimeUnit.NANOSECONDS);
+      if (event.shouldCommit()) {
+        event.service = serviceName();
+        event.scheduledTime = slot.toInstant().toEpochMilli();
+        event.lag = lag;
+        event.catchUp = catchUp;
+        event.success = success;
+        event.commit();
+      }
+      ZonedDateTime nextSlot = schedule.next(slot.plusNanos(1));
+      if (!catchUp && started.plusNanos(nanos).isAfter(nextSlot)) {
+        overruns.increment();
+        LOG.warn("Run of [{}] for {} took {} ms and overran the next slot {}", serviceName(), slot,
+                 TimeUnit.NANOSECONDS.toMillis(nanos), nextSlot);
+      }
+    }
+
+    if (success) {
+      recordSuccess(slot);
+    }
+  }
+
+  /**
+   * Finds the slots between the last successful run and now, at most {@link #MAX_CATCH_UP_RUNS} of the latest ones.
+   */
+  private List<ZonedDateTime> missedSlots(ZonedDateTime now) {
+    if (lastSuccessfulRun == null) {
+      return Collections.emptyList();
+    }
+    Deque<ZonedDateTime> missed = new ArrayDeque<>();
+    ZonedDateTime slot = schedule.next(lastSuccessfulRun.withZoneSameInstant(now.getZone()).plusNanos(1));
+    while (slot.isBefore(now)) {
+      if (missed.size() == MAX_CATCH_UP_RUNS) {
+        missed.removeFirst();
+      }
+      missed.addLast(slot);
+      slot = schedule.next(slot.plusNanos(1));
+    }
+    return new ArrayList<>(missed);
+  }
+
+  private ZonedDateTime readState(Path stateFile) {
+    if (!Files.exists(stateFile)) {
+      return null;
+    }
+    Properties state = new Properties();
+    try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+      state.load(reader);
+      String lastRun = state.getProperty(LAST_SUCCESSFUL_RUN);
+      return lastRun == null ? null : ZonedDateTime.parse(lastRun);
+    } catch (IOException | DateTimeParseException e) {
+      LOG.warn("Unable to read state of [{}] from [{}], treating it as if it never ran", serviceName(), stateFile, e);
+      return null;
+    }
+  }
+
+  private void recordSuccess(ZonedDateTime slot) {
+    synchronized (stateLock) {
+      // Concurrent runs may finish out of order
+      if (lastSuccessfulRun != null && !slot.isAfter(lastSuccessfulRun)) {
+        return;
+      }
+      lastSuccessfulRun = slot;
+      if (stateFile == null) {
+        return;
+      }
+
+      Properties state = new Properties();
+      state.setProperty(LAST_SUCCESSFUL_RUN, slot.toString());
+      try {
+        Path directory = stateFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, stateFile.getFileName().toString(), ".tmp");
+        try {
+          try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            state.store(writer, "State of " + serviceName());
+          }
+          try {
+            Files.move(tmp, stateFile, StandardCopyOption.ATOMIC_MOVE);
+          } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+          }
+        } finally {
+          Files.deleteIfExists(tmp);
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to store state of [{}] in [{}]", serviceName(), stateFile, e);
+      }
+    }
+  }
+}
@@ -1,8 +1,30 @@
 package org.gbif.cli.service;
 
 import org.gbif.cli.BaseCommand;
+import org.gbif.cli.CommandException;
+import org.gbif.cli.logging.FastLogging;
+import org.gbif.cli.metrics.MetricsManager;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,11 +34,43 @@ import org.slf4j.LoggerFactory;
  * <p/>
  * You mostly need to implement the {@link #getService()} method to return a Guava {@link Service} class. This will
  * then be started and stopped on JVM shutdown.
+ * <p/>
+ * To host several services in one command return a {@link ServiceGroup}, which starts them in parallel while
+ * respecting their dependencies.
+ * <p/>
+ * Services implementing {@link ConfigurationReloadListener} can be given a new configuration while they are running
+ * by starting the command with {@code --conf-watch}.
+ * <p/>
+ * If the metrics server is enabled it serves {@code /health/live} and {@code /health/ready} for orchestrators, based on
+ * the state of the service and the {@link #getReadinessChecks()}.
+ * <p/>
+ * Services implementing {@link Warmup} are warmed up within {@code --warmup-seconds} and {@code --warmup-iterations}
+ * once they are running, they are only reported as started and ready afterwards. The warmup runs on its own thread
+ * and is abandoned once {@code --warmup-seconds} passed, so a stuck warmup can't keep the service from getting ready.
  */
 public abstract class ServiceCommand extends BaseCommand {
 
   private static final Logger LOG = LoggerFactory.getLogger(ServiceCommand.class);
 
+  private static final long RELOAD_QUIET_PERIOD_MILLIS = 500;
+  // How long the shutdown hook waits for the command to log the termination of the service
+  private static final long TERMINATION_LOG_MILLIS = 1000;
+
+  private static final Counter RELOADS = Counter.builder("cli_config_reloads_total")
+    .description("Configuration reloads applied to the running service")
+    .tag("result", "success")
+    .register(MetricsManager.REGISTRY);
+  private static final Counter REJECTED_RELOADS = Counter.builder("cli_config_reloads_total")
+    .description("Configuration reloads applied to the running service")
+    .tag("result", "rejected")
+    .register(MetricsManager.REGISTRY);
+  private static final Timer WARMUP_TIMER = Timer.builder("cli_service_warmup_duration_seconds")
+    .description("Time taken to warm up the service after it started")
+    .register(MetricsManager.REGISTRY);
+  private static final Timer RELOAD_TIMER = Timer.builder("cli_config_reload_duration_seconds")
+    .description("Time taken to read, validate and apply changed configuration files")
+    .register(MetricsManager.REGISTRY);
+
   protected ServiceCommand(String name) {
     super(name);
   }
@@ -25,73 +79,246 @@ public abstract class ServiceCommand extends BaseCommand {
    * This method will be called after the command line arguments and the configuration file have been processed.
    * <p/>
    * The service will be started and on shutdown of the JVM it will also try to execute an orderly shutdown of the
-   * service (using {@link Service#startAsync()} and {@link Service#stopAsync()} respectively).
+   * service (using {@link Service#startAsync()} and {@link Service#stopAsync()} respectively). The shutdown has to
+   * finish within {@code --shutdown-timeout} seconds, services implementing {@link Drainable} are drained first.
    */
   protected abstract Service getService();
 
+  /**
+   * Can be overridden to add checks that have to pass, in addition to the service running, for it to be reported as
+   * ready on {@code /health/ready}. Called once before the service is started.
+   *
+   * @return checks by name, none by default
+   */
+  protected Map<String, ReadinessCheck> getReadinessChecks() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Can be overridden to warm up a service that doesn't implement {@link Warmup} itself.
+   *
+   * @param service returned by {@link #getService()}
+   *
+   * @return the warmup to run once the service is running or null for none, the service if it implements
+   * {@link Warmup} by default
+   */
+  protected Warmup getWarmup(Service service) {
+    return service instanceof Warmup ? (Warmup) service : null;
+  }
+
+  /**
+   * Starts the service and blocks until it terminated.
+   *
+   * @throws CommandException if the service fails to start or fails while running so the application exits with a
+   *                          non-zero exit code
+   */
   @Override
   protected final void doRun() {
     final Service service = getService();
 
-    Runtime.getRuntime().addShutdownHook(new ShutdownThread(service));
+    CountDownLatch finished = new CountDownLatch(1);
+    Runtime.getRuntime()
+      .addShutdownHook(new ShutdownThread(service, getGenericParameters().shutdownTimeout, finished));
+
+    Warmup warmup = getGenericParameters().warmupSeconds > 0 ? getWarmup(service) : null;
+    AtomicBoolean warmedUp = new AtomicBoolean(warmup == null);
+    if (getGenericParameters().metricsEnabled) {
+      Map<String, ReadinessCheck> checks = new LinkedHashMap<>(getReadinessChecks());
+      if (warmup != null) {
+        checks.put("warmup", warmedUp::get);
+      }
+      new HealthEndpoints(service, checks).register();
+    }
 
     LOG.info("Service starting ...");
     try {
-      // guava 14:
-      //service.startAndWait();
-
-      // guava 15+ only
       service.startAsync();
       service.awaitRunning();
+      if (warmup != null) {
+        warmUp(service, warmup);
+        warmedUp.set(true);
+      }
       LOG.info("Service started");
-    } catch (RuntimeException e) {
-      LOG.warn("Service failed to start", e);
+    } catch (IllegalStateException e) {
+      LOG.error("Service failed to start", service.failureCause());
+      throw new CommandException("Service failed to start", service.failureCause());
     }
 
-    // keep it running
-    synchronized(this) {
-      while (true) {
-        LOG.debug("Main command waiting for shutdown ...");
-        try {
-          this.wait();
-        } catch (InterruptedException e) {
-          LOG.debug("We were interrupted waiting for the service to stop, wait again", e);
-        }
+    if (getGenericParameters().watchConfiguration) {
+      watchConfiguration(service);
+    }
+
+    // keep it running until it is stopped by the shutdown hook or stops by itself
+    LOG.debug("Main command waiting for the service to terminate ...");
+    try {
+      service.awaitTerminated();
+      LOG.info("Service terminated");
+    } catch (IllegalStateException e) {
+      LOG.error("Service failed", service.failureCause());
+      throw new CommandException("Service failed", service.failureCause());
+    } finally {
+      finished.countDown();
+    }
+  }
+
+  /**
+   * Runs the warmup on its own thread within the configured budget. Waiting for it ends when the time of the budget
+   * passed or the service stops, the warmup thread is interrupted then. A failing warmup is logged but doesn't stop
+   * the service.
+   */
+  private void warmUp(Service service, Warmup warmup) {
+    Duration time = Duration.ofSeconds(getGenericParameters().warmupSeconds);
+    WarmupBudget budget = new WarmupBudget(time, getGenericParameters().warmupIterations);
+    LOG.info("Service warming up ...");
+    long start = System.nanoTime();
+
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    Thread thread = new Thread(() -> {
+      try {
+        warmup.warmUp(budget);
+        done.complete(null);
+      } catch (Exception e) {
+        done.completeExceptionally(e);
+      }
+    }, "warmup");
+    thread.setDaemon(true);
+    thread.start();
+    service.addListener(new Service.Listener() {
+      @Override
+      public void stopping(Service.State from) {
+        done.cancel(false);
+      }
+
+      @Override
+      public void failed(Service.State from, Throwable failure) {
+        done.cancel(false);
       }
+    }, MoreExecutors.directExecutor());
+    // The service may have stopped before the listener was added
+    if (!service.isRunning()) {
+      done.cancel(false);
+    }
+
+    try {
+      done.get(time.toNanos(), TimeUnit.NANOSECONDS);
+      LOG.info("Service warmed up with {} iterations in {} ms", budget.getIterations(),
+               TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (ExecutionException e) {
+      LOG.warn("Service failed to warm up, continuing cold", e.getCause());
+    } catch (TimeoutException e) {
+      LOG.warn("Service did not warm up within {} s, continuing cold", time.getSeconds());
+    } catch (CancellationException e) {
+      LOG.info("Service stopped while warming up");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      thread.interrupt();
+      WARMUP_TIMER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Starts watching the configuration files, reloading and handing them to the service whenever they change. The
+   * watcher is stopped once the service stops or fails.
+   */
+  private void watchConfiguration(Service service) {
+    if (!(service instanceof ConfigurationReloadListener)) {
+      LOG.warn("Service {} does not implement ConfigurationReloadListener, not watching the configuration files",
+               service);
+      return;
+    }
+    List<Path> files = new ArrayList<>();
+    for (String file : getGenericParameters().configurationFiles) {
+      files.add(Paths.get(file));
+    }
+    if (files.isEmpty()) {
+      LOG.warn("No configuration files given, there is nothing to watch");
+      return;
+    }
+
+    @SuppressWarnings("unchecked")
+    ConfigurationReloadListener<Object> listener = (ConfigurationReloadListener<Object>) service;
+    ConfigurationWatcher watcher = new ConfigurationWatcher(files, () -> {
+      // A change noticed while the service stops isn't applied anymore
+      if (service.isRunning()) {
+        reloadConfiguration(listener);
+      }
+    }, RELOAD_QUIET_PERIOD_MILLIS);
+    service.addListener(new Service.Listener() {
+      @Override
+      public void stopping(Service.State from) {
+        watcher.stopAsync();
+      }
+
+      @Override
+      public void failed(Service.State from, Throwable failure) {
+        watcher.stopAsync();
+      }
+    }, MoreExecutors.directExecutor());
+    watcher.startAsync().awaitRunning();
+    // The service may have stopped before the listener was added
+    if (!service.isRunning()) {
+      watcher.stopAsync();
+    }
+  }
+
+  /**
+   * Reads and validates the configuration files and hands the new configuration to the service. Invalid configurations
+   * are rejected and the service keeps running with its current configuration.
+   */
+  private void reloadConfiguration(ConfigurationReloadListener<Object> listener) {
+    long start = System.nanoTime();
+    try {
+      Object configuration = reloadConfiguration();
+      listener.configurationReloaded(configuration);
+      LOG.info("Configuration reloaded");
+      RELOADS.increment();
+    } catch (Exception e) {
+      LOG.error("Rejected changed configuration, the service keeps its current configuration", e);
+      REJECTED_RELOADS.increment();
+    } finally {
+      RELOAD_TIMER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
   }
 
   /**
    * This thread is intended to be passed to {@link Runtime#addShutdownHook(Thread)} and it tries to stop the service
-   * that it's being passed.
+   * that it's being passed within the given deadline. If the service doesn't stop in time the JVM is halted.
+   * <p/>
+   * Asynchronous appenders are flushed last, so what is logged while shutting down isn't lost when the JVM exits.
    */
   @SuppressWarnings("ClassExplicitlyExtendsThread")
-  private class ShutdownThread extends Thread {
+  private static class ShutdownThread extends Thread {
 
     private final Service service;
+    private final int timeoutSeconds;
+    private final CountDownLatch finished;
 
-    private ShutdownThread(Service service) {
+    private ShutdownThread(Service service, int timeoutSeconds, CountDownLatch finished) {
       this.service = service;
+      this.timeoutSeconds = timeoutSeconds;
+      this.finished = finished;
     }
 
     @Override
     public void run() {
       LOG.debug("Shutdown Hook called");
-      try {
-        if (service.isRunning()) {
-          LOG.info("Service stopping ...");
-          // guava 14:
-          //service.stopAndWait();
-
-          // guava 15+ only
-          service.stopAsync();
-          // TODO: Maybe wait with a timeout here after which we force close?
-          service.awaitTerminated();
-          LOG.info("Service stopped");
+      // Also stops a service that is still starting, otherwise a signal during a slow start would be ignored
+      Service.State state = service.state();
+      if (state == Service.State.NEW || state == Service.State.STARTING || state == Service.State.RUNNING) {
+        boolean stopped = new ShutdownCoordinator(service, timeoutSeconds, TimeUnit.SECONDS).shutdown();
+        if (!stopped) {
+          LOG.error("Forcing termination");
+          FastLogging.flush();
+          Runtime.getRuntime().halt(1);
+        }
+        try {
+          finished.await(TERMINATION_LOG_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
         }
-      } catch (Exception e) {
-        LOG.debug("Caught exception in shutdown hook", e);
       }
+      FastLogging.flush();
     }
   }
 }
@@ -0,0 +1,329 @@
+package org.gbif.cli.service;
+
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link Service} composed of several named services, so a {@link ServiceCommand} can host more than one service.
+ * <p/>
+ * Every service is started as soon as all services it depends on are running, so independent chains of dependencies
+ * start in parallel. On stop every service is stopped as soon as all services depending on it have terminated. If any
+ * service terminates on its own the whole group is stopped that way, if any service fails all others are stopped and
+ * the whole group fails.
+ * <p/>
+ * Draining and configuration reloads are passed on to all services implementing {@link Drainable} or
+ * {@link ConfigurationReloadListener} respectively.
+ * <p/>
+ * The startup time of every service is exposed as {@code cli_service_startup_seconds} and its current state as
+ * {@code cli_service_state}, the ordinal of its {@link Service.State}, both tagged with the service name.
+ * <pre><code>
+ * ServiceGroup.builder()
+ *   .add("cache", cacheWarmer)
+ *   .add("consumer", consumer, "cache")
+ *   .add("scheduler", scheduler)
+ *   .build();
+ * </code></pre>
+ */
+public class ServiceGroup extends AbstractService implements Drainable, ConfigurationReloadListener<Object> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ServiceGroup.class);
+
+  private final Map<String, Service> services;
+  private final Map<String, Set<String>> dependencies;
+  private final Map<String, Set<String>> dependents = new HashMap<>();
+  private final Map<String, Long> startNanos = new ConcurrentHashMap<>();
+  private final Map<String, Long> startupMillis = new ConcurrentHashMap<>();
+
+  // Guards the following fields, never held while waiting for a service
+  private final Object lock = new Object();
+  private final Set<String> started = new HashSet<>();
+  private final Set<String> stopped = new HashSet<>();
+  private boolean stopRequested;
+  private boolean startNotified;
+  private boolean completed;
+  private Throwable failure;
+
+  private ServiceGroup(Map<String, Service> services, Map<String, Set<String>> dependencies) {
+    this.services = services;
+    this.dependencies = dependencies;
+    for (String name : services.keySet()) {
+      dependents.put(name, new LinkedHashSet<>());
+    }
+    for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+      for (String dependency : entry.getValue()) {
+        dependents.get(dependency).add(entry.getKey());
+      }
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return the services of this group by name, in the order they were added
+   */
+  public Map<String, Service> getServices() {
+    return Collections.unmodifiableMap(services);
+  }
+
+  @Override
+  protected void doStart() {
+    registerMetrics();
+    for (Map.Entry<String, Service> entry : services.entrySet()) {
+      entry.getValue().addListener(new MemberListener(entry.getKey()), MoreExecutors.directExecutor());
+    }
+    synchronized (lock) {
+      for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+        if (entry.getValue().isEmpty()) {
+          startMember(entry.getKey());
+        }
+      }
+    }
+    completeIfTerminal();
+  }
+
+  @Override
+  protected void doStop() {
+    synchronized (lock) {
+      stopRequested = true;
+      stopReadyMembers();
+    }
+    completeIfTerminal();
+  }
+
+  @Override
+  public void stopAccepting() {
+    for (Service service : services.values()) {
+      if (service instanceof Drainable) {
+        ((Drainable) service).stopAccepting();
+      }
+    }
+  }
+
+  @Override
+  public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    boolean drained = true;
+    for (Service service : services.values()) {
+      if (service instanceof Drainable) {
+        drained &= ((Drainable) service).awaitDrained(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+    }
+    return drained;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void configurationReloaded(Object configuration) throws Exception {
+    for (Service service : services.values()) {
+      if (service instanceof ConfigurationReloadListener) {
+        ((ConfigurationReloadListener<Object>) service).configurationReloaded(configuration);
+      }
+    }
+  }
+
+  // Has to be called holding the lock
+  private void startMember(String name) {
+    started.add(name);
+    startNanos.put(name, System.nanoTime());
+    LOG.info("Starting service [{}]", name);
+    try {
+      services.get(name).startAsync();
+    } catch (IllegalStateException e) {
+      // The service had been started outside of the group
+      fail(e);
+    }
+  }
+
+  // Has to be called holding the lock, stops every service all of whose dependents have terminated
+  private void stopReadyMembers() {
+    for (Map.Entry<String, Service> entry : services.entrySet()) {
+      String name = entry.getKey();
+      if (!stopped.contains(name) && dependents.get(name).stream().allMatch(this::isTerminal)) {
+        stopped.add(name);
+        LOG.info("Stopping service [{}]", name);
+        entry.getValue().stopAsync();
+      }
+    }
+  }
+
+  // Has to be called holding the lock
+  private void fail(Throwable cause) {
+    if (failure == null) {
+      failure = cause;
+    }
+    stopRequested = true;
+    stopReadyMembers();
+  }
+
+  private boolean isTerminal(String name) {
+    Service.State state = services.get(name).state();
+    return state == Service.State.TERMINATED || state == Service.State.FAILED;
+  }
+
+  /**
+   * Completes stopping or failing the group once all its services have terminated.
+   */
+  private void completeIfTerminal() {
+    // Listeners of services stopped while holding the lock run nested, the outer caller completes the group then
+    // without holding the lock, as notifying the group while holding it could deadlock with a concurrent stopAsync()
+    if (Thread.holdsLock(lock)) {
+      return;
+    }
+    Throwable cause;
+    synchronized (lock) {
+      if (completed || !stopRequested || !services.keySet().stream().allMatch(this::isTerminal)) {
+        return;
+      }
+      completed = true;
+      cause = failure;
+    }
+    if (cause != null) {
+      notifyFailed(cause);
+    } else {
+      notifyStopped();
+    }
+  }
+
+  private void registerMetrics() {
+    for (Map.Entry<String, Service> entry : services.entrySet()) {
+      String name = entry.getKey();
+      Gauge.builder("cli_service_state", entry.getValue(), service -> service.state().ordinal())
+        .description("State of the service: 0 new, 1 starting, 2 running, 3 stopping, 4 terminated, 5 failed")
+        .tag("service", name)
+        .register(MetricsManager.REGISTRY);
+      TimeGauge.builder("cli_service_startup", startupMillis, TimeUnit.MILLISECONDS,
+                        times -> times.getOrDefault(name, 0L))
+        .description("Time the service took to start")
+        .tag("service", name)
+        .register(MetricsManager.REGISTRY);
+    }
+  }
+
+  /**
+   * Starts the dependents of a service once it is running, stops its dependencies once it terminated, stops the whole
+   * group if it terminated on its own and fails the whole group if it fails.
+   */
+  private class MemberListener extends Service.Listener {
+
+    private final String name;
+
+    private MemberListener(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void running() {
+      Long start = startNanos.get(name);
+      if (start != null) {
+        startupMillis.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      }
+      boolean notifyStarted = false;
+      synchronized (lock) {
+        if (stopRequested) {
+          stopReadyMembers();
+        } else {
+          for (String dependent : dependents.get(name)) {
+            if (!started.contains(dependent) && dependencies.get(dependent).stream()
+              .allMatch(dependency -> services.get(dependency).state() == Service.State.RUNNING)) {
+              startMember(dependent);
+            }
+          }
+          if (!startNotified && services.values().stream().allMatch(Service::isRunning)) {
+            startNotified = true;
+            notifyStarted = true;
+          }
+        }
+      }
+      if (notifyStarted) {
+        notifyStarted();
+      }
+      completeIfTerminal();
+    }
+
+    @Override
+    public void terminated(Service.State from) {
+      synchronized (lock) {
+        if (!stopRequested) {
+          // The group can't run without it, so all other services are stopped in order as well
+          LOG.warn("Service [{}] terminated on its own, stopping the group", name);
+          stopRequested = true;
+          stopped.add(name);
+        }
+        stopReadyMembers();
+      }
+      completeIfTerminal();
+    }
+
+    @Override
+    public void failed(Service.State from, Throwable cause) {
+      LOG.error("Service [{}] failed", name, cause);
+      synchronized (lock) {
+        fail(cause);
+      }
+      completeIfTerminal();
+    }
+  }
+
+  /**
+   * Builds a {@link ServiceGroup}, dependencies have to be added before the services depending on them.
+   */
+  public static class Builder {
+
+    private final Map<String, Service> services = new LinkedHashMap<>();
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a service to the group.
+     *
+     * @param name      unique name of the service, used for dependencies, logging and metrics
+     * @param service   to add
+     * @param dependsOn names of services that need to be running before this one is started
+     *
+     * @return this builder
+     */
+    public Builder add(String name, Service service, String... dependsOn) {
+      checkNotNull(name, "name can't be null");
+      checkNotNull(service, "service can't be null");
+      checkArgument(!services.containsKey(name), "Service [%s] has already been added", name);
+      for (String dependency : dependsOn) {
+        checkArgument(services.containsKey(dependency), "Service [%s] depends on unknown service [%s]", name,
+                      dependency);
+      }
+      services.put(name, service);
+      dependencies.put(name, new LinkedHashSet<>(Arrays.asList(dependsOn)));
+      return this;
+    }
+
+    public ServiceGroup build() {
+      checkArgument(!services.isEmpty(), "A service group needs at least one service");
+      // Dependencies have to be added first so there can't be any cycles
+      return new ServiceGroup(new LinkedHashMap<>(services), new LinkedHashMap<>(dependencies));
+    }
+  }
+}
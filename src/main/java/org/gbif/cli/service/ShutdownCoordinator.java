@@ -0,0 +1,88 @@
+package org.gbif.cli.service;
+
+import org.gbif.cli.Diagnostics;
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops a {@link Service} in phases within a fixed deadline.
+ * <p/>
+ * If the service is {@link Drainable} it is first asked to stop accepting work and given the chance to drain the work
+ * in flight, then it is stopped using {@link Service#stopAsync()}. All phases share one deadline. If the service is not
+ * terminated when the deadline passes a thread dump is logged to show what it is stuck on, the caller is then expected
+ * to force termination.
+ */
+public class ShutdownCoordinator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShutdownCoordinator.class);
+
+  private static final Timer SHUTDOWN_TIMER = Timer.builder("cli_service_shutdown_duration_seconds")
+    .description("Time taken to stop the service on shutdown")
+    .register(MetricsManager.REGISTRY);
+  private static final Counter SHUTDOWN_TIMEOUTS =
+    MetricsManager.createCounter("cli_service_shutdown_timeouts_total",
+                                 "Shutdowns that did not finish within the deadline");
+
+  private final Service service;
+  private final long timeoutNanos;
+
+  /**
+   * @param service to stop
+   * @param timeout deadline for the whole shutdown, drain included
+   * @param unit    of the timeout
+   */
+  public ShutdownCoordinator(Service service, long timeout, TimeUnit unit) {
+    this.service = service;
+    this.timeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Stops the service, draining it first if possible.
+   *
+   * @return true if the service terminated within the deadline, false if it is still stopping or failed while stopping
+   */
+  public boolean shutdown() {
+    long start = System.nanoTime();
+    long deadline = start + timeoutNanos;
+    try {
+      if (service instanceof Drainable) {
+        Drainable drainable = (Drainable) service;
+        LOG.info("Service stops accepting work ...");
+        drainable.stopAccepting();
+        if (drainable.awaitDrained(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          LOG.info("Service drained all work in flight");
+        } else {
+          LOG.warn("Service did not drain its work in flight within the deadline, stopping it anyway");
+        }
+      }
+
+      LOG.info("Service stopping ...");
+      service.stopAsync();
+      service.awaitTerminated(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      LOG.info("Service stopped");
+      return true;
+    } catch (TimeoutException e) {
+      SHUTDOWN_TIMEOUTS.increment();
+      LOG.error("Service did not stop within {} seconds, current threads:{}{}",
+                TimeUnit.NANOSECONDS.toSeconds(timeoutNanos), System.lineSeparator(), Diagnostics.threadDump());
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while stopping the service");
+      return false;
+    } catch (IllegalStateException e) {
+      LOG.error("Service failed while stopping", e);
+      return false;
+    } finally {
+      SHUTDOWN_TIMER.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
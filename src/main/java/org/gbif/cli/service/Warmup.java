@@ -0,0 +1,22 @@
+package org.gbif.cli.service;
+
+/**
+ * Implemented by services run from a {@link ServiceCommand} that should warm up before they take load, e.g. by
+ * replaying sample requests to get hot code compiled or by preloading caches.
+ * <p/>
+ * The warmup runs on its own thread once the service is running. Until it finished the service isn't reported as ready
+ * on {@code /health/ready}. Once the time of the budget passed or the service stops the warmup is abandoned and its
+ * thread interrupted, it should check the budget and stop when interrupted rather than keep running in the background.
+ */
+@FunctionalInterface
+public interface Warmup {
+
+  /**
+   * Warms up the service, typically in a loop like {@code while (budget.tryNext()) { ... }}.
+   *
+   * @param budget limiting the time and number of iterations spent warming up
+   *
+   * @throws Exception if warming up failed, the service is reported as ready anyway
+   */
+  void warmUp(WarmupBudget budget) throws Exception;
+}
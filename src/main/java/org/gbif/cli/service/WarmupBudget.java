@@ -0,0 +1,63 @@
+package org.gbif.cli.service;
+
+import java.time.Duration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Limits the time and number of iterations a {@link Warmup} spends. The time starts running when the budget is
+ * created.
+ */
+public class WarmupBudget {
+
+  private final long deadline;
+  private final long maxIterations;
+  private long iterations;
+
+  /**
+   * @param time          maximum time to spend
+   * @param maxIterations maximum number of iterations, 0 for no limit
+   */
+  public WarmupBudget(Duration time, long maxIterations) {
+    checkNotNull(time, "time can't be null");
+    checkArgument(!time.isNegative(), "time can't be negative");
+    checkArgument(maxIterations >= 0, "maxIterations can't be negative");
+    this.deadline = System.nanoTime() + time.toNanos();
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Starts the next iteration if the budget allows it.
+   *
+   * @return true if another iteration can be run, false if the budget is exhausted
+   */
+  public boolean tryNext() {
+    if (isExhausted()) {
+      return false;
+    }
+    iterations++;
+    return true;
+  }
+
+  /**
+   * @return true if the time or all iterations have been used up
+   */
+  public boolean isExhausted() {
+    return (maxIterations > 0 && iterations >= maxIterations) || System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * @return remaining time, zero once it is used up
+   */
+  public Duration getRemaining() {
+    return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+  }
+
+  /**
+   * @return number of iterations started
+   */
+  public long getIterations() {
+    return iterations;
+  }
+}
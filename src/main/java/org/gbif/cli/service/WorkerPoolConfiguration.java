@@ -0,0 +1,48 @@
+package org.gbif.cli.service;
+
+import java.util.StringJoiner;
+
+import com.beust.jcommander.Parameter;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Configures the worker pool of a {@link ParallelWorkerService}. Can be embedded in a command's configuration object,
+ * optionally using {@code @ParametersDelegate} to make it configurable from the command line.
+ */
+public class WorkerPoolConfiguration {
+
+  @Parameter(
+    names = "--worker-threads",
+    description = "Number of items processed in parallel")
+  @Min(1)
+  public int threads = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(
+    names = "--worker-queue-size",
+    description = "Number of items waiting to be processed before backpressure is applied, 0 hands items directly to "
+                  + "idle workers")
+  @Min(0)
+  public int queueSize = 100;
+
+  @Parameter(
+    names = "--worker-backpressure",
+    description = "What happens to items submitted while the queue is full, BLOCK, REJECT or CALLER_RUNS")
+  @NotNull
+  public Backpressure backpressure = Backpressure.BLOCK;
+
+  @Parameter(
+    names = "--worker-virtual-threads",
+    description = "Processes items on virtual threads if the JVM supports them")
+  public boolean virtualThreads;
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", WorkerPoolConfiguration.class.getSimpleName() + "[", "]")
+      .add("threads=" + threads)
+      .add("queueSize=" + queueSize)
+      .add("backpressure=" + backpressure)
+      .add("virtualThreads=" + virtualThreads)
+      .toString();
+  }
+}
@@ -1,6 +1,19 @@
 package org.gbif.cli;
 
+import org.gbif.cli.metrics.CommandMeters;
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Counter;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -8,12 +21,54 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BaseCommandTest {
 
+  public static class MergeTestCommand extends BaseCommand {
+
+    public static class Config {
+      public String foo;
+      public Map<String, Object> nested;
+      public List<String> tags;
+    }
+
+    public final Config config = new Config();
+
+    public MergeTestCommand() {
+      super("mergetest");
+    }
+
+    @Override
+    protected Object getConfigurationObject() {
+      return config;
+    }
+
+    @Override
+    protected void doRun() {
+    }
+  }
+
+  @BeforeEach
+  public void resetMeters() {
+    // Also removes the phase timers, so counts don't depend on other tests running commands before
+    CommandMeters.reset();
+  }
+
   @Test
   public void testHelp() {
     Command command = new TestBaseCommand();
     command.run("-h");
   }
 
+  @Test
+  public void testPhaseMetrics(@TempDir Path tmp) {
+    MergeTestCommand command = new MergeTestCommand();
+    command.run("--metrics-textfile", tmp.resolve("metrics.prom").toString());
+
+    for (String phase : new String[] {"generic-parameters", "configuration-files", "command-parameters",
+      "configure-logging", "validation", "run"}) {
+      assertEquals(1, MetricsManager.REGISTRY.get("cli_command_phase_duration_seconds")
+        .tags("command", "mergetest", "phase", phase).timer().count(), phase);
+    }
+  }
+
   @Test
   public void testFailure() {
     Command command = new TestBaseCommand();
@@ -48,6 +103,66 @@ public class BaseCommandTest {
     assertEquals("CLI", command.getParameterObject().foo);
   }
 
+  @Test
+  public void testDeepMergedConfigFiles() {
+    MergeTestCommand command = new MergeTestCommand();
+    command.run("--conf", "target/test-classes/mergetest-base.yaml", "target/test-classes/mergetest-override.yaml");
+    assertEquals("BASE", command.config.foo);
+    assertEquals("base", command.config.nested.get("name"));
+    assertEquals(2, command.config.nested.get("size"));
+    assertEquals(Arrays.asList("c"), command.config.tags);
+
+    command = new MergeTestCommand();
+    command.run("--conf", "target/test-classes/mergetest-base.yaml", "target/test-classes/mergetest-override.yaml",
+                "--conf-list-merge", "APPEND");
+    assertEquals(Arrays.asList("a", "b", "c"), command.config.tags);
+  }
+
+  @Test
+  public void testReloadConfiguration(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("config.yaml");
+    Files.write(file, "foo: ONE".getBytes(StandardCharsets.UTF_8));
+
+    TestBaseCommand command = new TestBaseCommand();
+    command.run("--foo", "CLI", "--conf", file.toString());
+    assertEquals("ONE", command.getConfigurationObject().foo);
+
+    Files.write(file, "foo: TWO".getBytes(StandardCharsets.UTF_8));
+    TestBaseCommand.ParameterObject reloaded = (TestBaseCommand.ParameterObject) command.reloadConfiguration();
+    assertEquals("TWO", reloaded.foo);
+    assertEquals("ONE", command.getConfigurationObject().foo);
+
+    Files.write(file, "bar: THREE".getBytes(StandardCharsets.UTF_8));
+    Throwable e = assertThrows(CommandException.class, command::reloadConfiguration);
+    assertTrue(e.getMessage().contains("validation"));
+  }
+
+  @Test
+  public void testConfigurationCache() {
+    String cacheDir = "target/conf-cache-" + System.nanoTime();
+    Counter hits = MetricsManager.REGISTRY.counter("cli_config_cache_hits_total");
+    double hitsBefore = hits.count();
+
+    TestBaseCommand command = new TestBaseCommand();
+    command.run("--foo", "CLI", "--conf", "target/test-classes/configtest.json", "target/test-classes/configtest.yaml",
+                "--conf-cache", cacheDir);
+    assertEquals("YAML", command.getConfigurationObject().foo);
+    assertEquals(hitsBefore, hits.count());
+
+    command = new TestBaseCommand();
+    command.run("--foo", "CLI", "--conf", "target/test-classes/configtest.json", "target/test-classes/configtest.yaml",
+                "--conf-cache", cacheDir);
+    assertEquals("YAML", command.getConfigurationObject().foo);
+    assertEquals(hitsBefore + 1, hits.count());
+
+    // A different order of the same files is a different configuration
+    command = new TestBaseCommand();
+    command.run("--foo", "CLI", "--conf", "target/test-classes/configtest.yaml", "target/test-classes/configtest.json",
+                "--conf-cache", cacheDir);
+    assertEquals("JSON", command.getConfigurationObject().foo);
+    assertEquals(hitsBefore + 1, hits.count());
+  }
+
   @Test
   public void testIllegalFileName() {
     TestBaseCommand command = new TestBaseCommand();
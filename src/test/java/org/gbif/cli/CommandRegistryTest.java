@@ -0,0 +1,40 @@
+package org.gbif.cli;
+
+import java.util.ServiceLoader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandRegistryTest {
+
+  @Test
+  public void testNamedCommandIsLoadedLazily() {
+    CommandRegistry registry = new CommandRegistry(ServiceLoader.load(Command.class));
+    assertEquals(2, registry.getProviderCount());
+    assertEquals(0, registry.getInstantiatedCount());
+
+    Command command = registry.find("namedmetainfcommand");
+    assertTrue(command instanceof NamedMetaInfCommand);
+    assertEquals(1, registry.getInstantiatedCount());
+    assertEquals(command, registry.find("namedmetainfcommand"));
+  }
+
+  @Test
+  public void testUnnamedCommand() {
+    CommandRegistry registry = new CommandRegistry(ServiceLoader.load(Command.class));
+    int named = NamedMetaInfCommand.INSTANCES.get();
+
+    assertTrue(registry.find("metainfcommand") instanceof MetaInfCommand);
+    assertEquals(named, NamedMetaInfCommand.INSTANCES.get());
+  }
+
+  @Test
+  public void testFindAll() {
+    CommandRegistry registry = new CommandRegistry(ServiceLoader.load(Command.class));
+    assertNull(registry.find("foo"));
+    assertEquals(2, registry.findAll().size());
+  }
+}
@@ -31,6 +31,7 @@ public class ConfigUtilsTest {
     Properties props = ConfigUtils.toProperties(new GenericParameters());
     assertEquals("false", props.getProperty("verbose"));
     assertNull(props.getProperty("configurationFiles"));
+    assertEquals("REPLACE", props.getProperty("listMergeStrategy"));
   }
 
   @Test
@@ -0,0 +1,40 @@
+package org.gbif.cli;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigurationMergerTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void testDeepMerge() throws Exception {
+    JsonNode base = MAPPER.readTree("{\"foo\": \"BASE\", \"nested\": {\"name\": \"base\", \"size\": 1}, \"tags\": [\"a\"]}");
+    JsonNode update = MAPPER.readTree("{\"nested\": {\"size\": 2}, \"tags\": [\"c\"], \"bar\": null}");
+
+    JsonNode merged = ConfigurationMerger.merge(Arrays.asList(base, update), ListMergeStrategy.REPLACE);
+    assertEquals("BASE", merged.get("foo").asText());
+    assertEquals("base", merged.get("nested").get("name").asText());
+    assertEquals(2, merged.get("nested").get("size").asInt());
+    assertEquals(MAPPER.readTree("[\"c\"]"), merged.get("tags"));
+    assertTrue(merged.get("bar").isNull());
+
+    // inputs are left untouched
+    assertEquals(1, base.get("nested").get("size").asInt());
+  }
+
+  @Test
+  public void testAppendLists() throws Exception {
+    JsonNode base = MAPPER.readTree("{\"tags\": [\"a\", \"b\"]}");
+    JsonNode update = MAPPER.readTree("{\"tags\": [\"c\"]}");
+
+    JsonNode merged = ConfigurationMerger.merge(Arrays.asList(base, update), ListMergeStrategy.APPEND);
+    assertEquals(MAPPER.readTree("[\"a\", \"b\", \"c\"]"), merged.get("tags"));
+  }
+}
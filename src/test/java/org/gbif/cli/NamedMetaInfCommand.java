@@ -0,0 +1,26 @@
+package org.gbif.cli;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Optional;
+
+@CommandName("namedmetainfcommand")
+public class NamedMetaInfCommand extends Command {
+
+  public static final AtomicInteger INSTANCES = new AtomicInteger();
+
+  public NamedMetaInfCommand() {
+    super("namedmetainfcommand");
+    INSTANCES.incrementAndGet();
+  }
+
+  @Override
+  public Optional<String> getUsage() {
+    return Optional.absent();
+  }
+
+  @Override
+  public void run(String... arguments) {
+  }
+
+}
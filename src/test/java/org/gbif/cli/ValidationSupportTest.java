@@ -0,0 +1,80 @@
+package org.gbif.cli;
+
+import java.util.Collections;
+import java.util.List;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValidationSupportTest {
+
+  public static class Unconstrained {
+    public String foo;
+    public List<String> bars;
+  }
+
+  public static class Nested {
+    @Valid
+    public Unconstrained unconstrained = new Unconstrained();
+  }
+
+  public static class ContainerElement {
+    public List<@NotNull String> bars;
+  }
+
+  public static class Inherited extends TestBaseCommand.ParameterObject {
+  }
+
+  public static class Getter {
+    @Min(1)
+    public int getCount() {
+      return 0;
+    }
+  }
+
+  public static class FooValidator implements ConfigurationValidator<Custom> {
+    @Override
+    public List<String> validate(Custom object) {
+      return object.foo == null ? Collections.singletonList("foo: must not be null") : Collections.emptyList();
+    }
+  }
+
+  @ValidatedBy(FooValidator.class)
+  public static class Custom {
+    @NotNull
+    public String foo;
+  }
+
+  @Test
+  public void testIsConstrained() {
+    assertFalse(ValidationSupport.isConstrained(Unconstrained.class));
+    assertFalse(ValidationSupport.isConstrained(Object.class));
+    assertTrue(ValidationSupport.isConstrained(TestBaseCommand.ParameterObject.class));
+    assertTrue(ValidationSupport.isConstrained(Nested.class));
+    assertTrue(ValidationSupport.isConstrained(ContainerElement.class));
+    assertTrue(ValidationSupport.isConstrained(Inherited.class));
+    assertTrue(ValidationSupport.isConstrained(Getter.class));
+  }
+
+  @Test
+  public void testValidate() {
+    assertTrue(ValidationSupport.validate(new Unconstrained()).isEmpty());
+    assertEquals(1, ValidationSupport.validate(new TestBaseCommand.ParameterObject()).size());
+    assertEquals(1, ValidationSupport.validate(new Getter()).size());
+  }
+
+  @Test
+  public void testValidatedBy() {
+    Custom custom = new Custom();
+    assertEquals(Collections.singletonList("foo: must not be null"), ValidationSupport.validate(custom));
+
+    custom.foo = "bar";
+    assertTrue(ValidationSupport.validate(custom).isEmpty());
+  }
+}
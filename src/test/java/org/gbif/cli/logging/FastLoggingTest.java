@@ -0,0 +1,93 @@
+package org.gbif.cli.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.jul.LevelChangePropagator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.read.ListAppender;
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FastLoggingTest {
+
+  @Test
+  public void testMakeAsync() throws Exception {
+    LoggerContext context = new LoggerContext();
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    ListAppender<ILoggingEvent> list = new ListAppender<>();
+    list.setContext(context);
+    list.setName("fast-logging-test");
+    list.start();
+    Logger logger = context.getLogger("test");
+    logger.addAppender(list);
+
+    FastLogging.makeAsync(context, 16, true);
+
+    assertNull(logger.getAppender("fast-logging-test"));
+    Appender<ILoggingEvent> async = logger.getAppender("async-fast-logging-test");
+    assertTrue(async instanceof MeteredAsyncAppender);
+
+    for (int i = 0; i < 10; i++) {
+      logger.warn("Event {}", i);
+    }
+    assertTrue(((MeteredAsyncAppender) async).awaitEmpty(5000));
+    // The last event may still be handed to the appender after the queue is empty
+    Thread.sleep(100);
+    assertEquals(10, list.list.size());
+
+    assertNotNull(MetricsManager.REGISTRY.find("cli_log_queue_depth").tag("appender", "async-fast-logging-test")
+                    .gauge());
+    assertEquals(0, MetricsManager.REGISTRY.get("cli_log_events_dropped_total")
+      .tag("appender", "async-fast-logging-test")
+      .counter()
+      .count());
+
+    // Already asynchronous appenders aren't wrapped again
+    FastLogging.makeAsync(context, 16, true);
+    assertTrue(logger.getAppender("async-fast-logging-test") == async);
+    context.stop();
+  }
+
+  @Test
+  public void testSharedAppender() throws Exception {
+    LoggerContext context = new LoggerContext();
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    ListAppender<ILoggingEvent> list = new ListAppender<>();
+    list.setContext(context);
+    list.setName("fast-logging-shared");
+    list.start();
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.addAppender(list);
+    Logger logger = context.getLogger("shared");
+    logger.setAdditive(false);
+    logger.addAppender(list);
+
+    FastLogging.makeAsync(context, 16, true);
+
+    Appender<ILoggingEvent> async = root.getAppender("async-fast-logging-shared");
+    assertTrue(async instanceof MeteredAsyncAppender);
+    assertTrue(logger.getAppender("async-fast-logging-shared") == async);
+
+    root.warn("Root event");
+    logger.warn("Shared event");
+    assertTrue(((MeteredAsyncAppender) async).awaitEmpty(5000));
+    Thread.sleep(100);
+    assertEquals(2, list.list.size());
+    context.stop();
+  }
+
+  @Test
+  public void testPropagateLevelsToJul() {
+    LoggerContext context = new LoggerContext();
+    FastLogging.propagateLevelsToJul(context);
+    FastLogging.propagateLevelsToJul(context);
+    assertEquals(1, context.getCopyOfListenerList().stream().filter(l -> l instanceof LevelChangePropagator).count());
+  }
+}
@@ -0,0 +1,123 @@
+package org.gbif.cli.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.read.ListAppender;
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitingTurboFilterTest {
+
+  private LoggerContext context;
+  private ListAppender<ILoggingEvent> list;
+  private Logger logger;
+
+  @BeforeEach
+  public void setUp() {
+    context = new LoggerContext();
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    list = new ListAppender<>();
+    list.setContext(context);
+    list.start();
+    logger = context.getLogger("test");
+    logger.addAppender(list);
+  }
+
+  @Test
+  public void testDuplicates() {
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setDedupeWindowMillis(60_000);
+    filter.setAllowedRepetitions(3);
+    FastLogging.limitRate(context, filter);
+
+    double suppressed = suppressed("duplicate");
+    for (int i = 0; i < 10; i++) {
+      logger.error("Failed to connect to {}", i);
+    }
+    logger.error("Another message");
+    // Only messages of the same logger count as duplicates
+    context.getLogger("other").error("Failed to connect to {}", 0);
+
+    assertEquals(4, list.list.size());
+    assertEquals(7, suppressed("duplicate") - suppressed);
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setDedupeWindowMillis(200);
+    filter.setAllowedRepetitions(1);
+    filter.setMaxKeys(2);
+    FastLogging.limitRate(context, filter);
+
+    logger.error("First");
+    logger.error("Second");
+    // No room to track another message, it is let through
+    logger.error("Third");
+    logger.error("Third");
+    assertEquals(4, list.list.size());
+    logger.error("First");
+    assertEquals(4, list.list.size());
+
+    // Expired windows make room again
+    Thread.sleep(250);
+    logger.error("Third");
+    logger.error("Third");
+    assertEquals(5, list.list.size());
+  }
+
+  @Test
+  public void testRateLimitByLevel() {
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setRateLimit(5);
+    filter.setRateLimitKey(RateLimitingTurboFilter.Key.LEVEL);
+    FastLogging.limitRate(context, filter);
+
+    for (int i = 0; i < 20; i++) {
+      logger.warn("Warning {}", i);
+      logger.info("Info {}", i);
+    }
+    // A burst of one second's worth is let through per level, plus what refilled in the meantime
+    long warnings = list.list.stream().filter(e -> e.getLevel() == Level.WARN).count();
+    long infos = list.list.stream().filter(e -> e.getLevel() == Level.INFO).count();
+    assertTrue(warnings >= 5 && warnings < 10, "Unexpected number of warnings " + warnings);
+    assertTrue(infos >= 5 && infos < 10, "Unexpected number of infos " + infos);
+  }
+
+  @Test
+  public void testSampling() {
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setDebugSampleRate(0);
+    FastLogging.limitRate(context, filter);
+
+    logger.setLevel(Level.INFO);
+    double suppressed = suppressed("sampled");
+    // Disabled events aren't counted
+    logger.debug("Not enabled");
+    logger.setLevel(Level.DEBUG);
+    logger.debug("Sampled");
+    logger.info("Not sampled");
+
+    assertEquals(1, list.list.size());
+    assertEquals(1, suppressed("sampled") - suppressed);
+  }
+
+  @Test
+  public void testInvalid() {
+    RateLimitingTurboFilter filter = new RateLimitingTurboFilter();
+    filter.setDebugSampleRate(2);
+    assertThrows(IllegalArgumentException.class, () -> FastLogging.limitRate(context, filter));
+  }
+
+  private static double suppressed(String reason) {
+    return MetricsManager.REGISTRY.get("cli_log_suppressed_total").tag("reason", reason).counter().count();
+  }
+}
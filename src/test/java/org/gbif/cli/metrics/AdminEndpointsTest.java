@@ -0,0 +1,99 @@
+package org.gbif.cli.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdminEndpointsTest {
+
+  @BeforeAll
+  public static void start() {
+    AdminEndpoints.register();
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ZERO);
+  }
+
+  @AfterAll
+  public static void stop() {
+    MetricsManager.stopMetricsServer();
+  }
+
+  @Test
+  public void testLoggers() throws Exception {
+    Logger logger = (Logger) LoggerFactory.getLogger("org.gbif.cli.admin.test");
+
+    HttpURLConnection connection = open("/admin/loggers?name=org.gbif.cli.admin.test&level=WARN", "POST");
+    assertEquals(200, connection.getResponseCode());
+    assertEquals(Level.WARN, logger.getLevel());
+
+    connection = open("/admin/loggers", "GET");
+    assertTrue(read(connection).contains("org.gbif.cli.admin.test WARN WARN"));
+
+    // Without a level the logger inherits it again
+    assertEquals(200, open("/admin/loggers?name=org.gbif.cli.admin.test", "POST").getResponseCode());
+    assertNull(logger.getLevel());
+
+    assertEquals(400, open("/admin/loggers?name=org.gbif.cli.admin.test&level=LOUD", "POST").getResponseCode());
+    assertEquals(400, open("/admin/loggers?level=WARN", "POST").getResponseCode());
+    // The root logger can't inherit a level
+    assertEquals(400, open("/admin/loggers?name=ROOT", "POST").getResponseCode());
+    assertEquals(400, open("/admin/loggers?name=root&level=", "POST").getResponseCode());
+  }
+
+  @Test
+  public void testUnknownLogger() throws Exception {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    assertEquals(404, open("/admin/loggers?name=org.gbif.cli.admin.unknown", "GET").getResponseCode());
+    // Looking up a logger doesn't create it
+    assertNull(context.exists("org.gbif.cli.admin.unknown"));
+
+    LoggerFactory.getLogger("org.gbif.cli.admin.known");
+    HttpURLConnection connection = open("/admin/loggers?name=org.gbif.cli.admin.known", "GET");
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(read(connection).startsWith("org.gbif.cli.admin.known - "));
+  }
+
+  @Test
+  public void testDiagnostics() throws Exception {
+    HttpURLConnection connection = open("/admin/threads", "GET");
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(read(connection).contains("\"main\""));
+
+    connection = open("/admin/deadlocks", "GET");
+    assertEquals(200, connection.getResponseCode());
+
+    connection = open("/admin/heap", "GET");
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(read(connection).contains("java.lang.String"));
+
+    assertEquals(405, open("/admin/threads", "POST").getResponseCode());
+  }
+
+  private static HttpURLConnection open(String path, String method) throws IOException {
+    HttpURLConnection connection =
+      (HttpURLConnection) new URL("http://localhost:" + MetricsManager.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+    return connection;
+  }
+
+  private static String read(HttpURLConnection connection) throws IOException {
+    try (InputStream in = connection.getInputStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package org.gbif.cli.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CommandMetersTest {
+
+  @BeforeEach
+  @AfterEach
+  public void reset() {
+    CommandMeters.reset();
+  }
+
+  @Test
+  public void testRecord() {
+    CommandMeters meters = CommandMeters.forCommand("meters-test");
+    assertSame(meters, CommandMeters.forCommand("meters-test"));
+
+    meters.record(() -> {});
+    assertThrows(IllegalStateException.class, () -> meters.record(() -> {
+      throw new IllegalStateException("Failed");
+    }));
+
+    assertEquals(2, MetricsManager.REGISTRY.get("cli_command_executions_total").tag("command", "meters-test")
+      .counter().count());
+    assertEquals(1, MetricsManager.REGISTRY.get("cli_command_errors_total").tag("command", "meters-test")
+      .counter().count());
+    assertEquals(2, MetricsManager.REGISTRY.get("cli_command_duration_seconds").tag("command", "meters-test")
+      .timer().count());
+  }
+
+  @Test
+  public void testCardinalityLimit() {
+    for (int i = 0; i < CommandMeters.MAX_COMMANDS; i++) {
+      CommandMeters.forCommand("cardinality-test-" + i);
+    }
+    CommandMeters overflow = CommandMeters.forCommand("cardinality-test-overflow");
+    assertEquals(CommandMeters.OTHER, overflow.getCommand());
+    assertSame(overflow, CommandMeters.forCommand("cardinality-test-another-overflow"));
+
+    CommandMeters.reset();
+    assertNull(MetricsManager.REGISTRY.find("cli_command_executions_total").tag("command", "cardinality-test-0")
+                 .counter());
+    assertEquals("cardinality-test-overflow", CommandMeters.forCommand("cardinality-test-overflow").getCommand());
+  }
+}
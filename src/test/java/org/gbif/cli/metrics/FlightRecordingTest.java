@@ -0,0 +1,38 @@
+package org.gbif.cli.metrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlightRecordingTest {
+
+  @Test
+  public void testRecording(@TempDir Path tmp) throws Exception {
+    Path destination = tmp.resolve("test.jfr");
+    FlightRecording recording = FlightRecording.start("default", destination);
+    try {
+      CommandPhaseEvent event = new CommandPhaseEvent();
+      event.command = "jfrtest";
+      event.phase = "run";
+      event.begin();
+      event.commit();
+
+      assertEquals(destination, recording.dump());
+      assertTrue(Files.size(destination) > 0);
+    } finally {
+      recording.close();
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(destination);
+    assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("org.gbif.cli.CommandPhase")
+                                             && "jfrtest".equals(e.getString("command"))));
+  }
+}
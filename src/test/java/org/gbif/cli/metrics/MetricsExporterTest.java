@@ -0,0 +1,58 @@
+package org.gbif.cli.metrics;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsExporterTest {
+
+  @Test
+  public void testExport(@TempDir Path tmp) throws Exception {
+    MetricsManager.createCounter("cli_export_test_total", "Counter for the export test").increment();
+
+    // Stands in for a Pushgateway
+    AtomicInteger requests = new AtomicInteger();
+    AtomicReference<String> request = new AtomicReference<>();
+    AtomicReference<String> body = new AtomicReference<>();
+    HttpServer pushgateway = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    pushgateway.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      request.set(exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath());
+      try (InputStream in = exchange.getRequestBody()) {
+        body.set(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+      }
+      exchange.sendResponseHeaders(202, -1);
+      exchange.close();
+    });
+    pushgateway.start();
+
+    try {
+      Path textFile = tmp.resolve("textfile/export.prom");
+      MetricsExporter exporter = new MetricsExporter(
+        textFile, "http://localhost:" + pushgateway.getAddress().getPort() + "/", "export test");
+      exporter.export();
+      exporter.export();
+
+      assertTrue(Files.readString(textFile).contains("cli_export_test_total 1.0"));
+      try (var files = Files.list(textFile.getParent())) {
+        assertEquals(1, files.count());
+      }
+      assertEquals(1, requests.get());
+      assertEquals("PUT /metrics/job/export%20test", request.get());
+      assertTrue(body.get().contains("cli_export_test_total 1.0"));
+    } finally {
+      pushgateway.stop(0);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.gbif.cli.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsManagerTest {
+
+  @AfterEach
+  public void stop() {
+    MetricsManager.stopMetricsServer();
+  }
+
+  @Test
+  public void testScrape() throws Exception {
+    MetricsManager.createCounter("cli_scrape_test_total", "Counter for the scrape test").increment();
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ZERO);
+
+    HttpURLConnection connection = open(null, null);
+    assertTrue(connection.getContentType().startsWith("text/plain"));
+    assertNull(connection.getContentEncoding());
+    String body = read(connection.getInputStream());
+    assertTrue(body.contains("cli_scrape_test_total 1.0"));
+
+    connection = open("application/openmetrics-text; version=1.0.0", "gzip, deflate");
+    assertTrue(connection.getContentType().startsWith("application/openmetrics-text"));
+    assertEquals("gzip", connection.getContentEncoding());
+    body = read(new GZIPInputStream(connection.getInputStream()));
+    assertTrue(body.contains("cli_scrape_test_total 1.0"));
+    assertTrue(body.trim().endsWith("# EOF"));
+  }
+
+  @Test
+  public void testCachedScrape() throws Exception {
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ofMinutes(1));
+
+    String first = read(open(null, null).getInputStream());
+    MetricsManager.createCounter("cli_cached_scrape_test_total", "Counter registered after the first scrape");
+    assertEquals(first, read(open(null, null).getInputStream()));
+    assertEquals(first, read(new GZIPInputStream(open(null, "gzip").getInputStream())));
+  }
+
+  @Test
+  public void testEndpoint() throws Exception {
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ZERO);
+    MetricsManager.registerEndpoint("/endpoint-test", exchange -> {
+      exchange.sendResponseHeaders(204, -1);
+      exchange.close();
+    });
+
+    URL url = new URL("http://localhost:" + MetricsManager.getPort() + "/endpoint-test");
+    assertEquals(204, ((HttpURLConnection) url.openConnection()).getResponseCode());
+  }
+
+  @Test
+  public void testTimerHistograms() {
+    try {
+      MetricsManager.configureTimers(true, new double[] {0.99}, new Duration[] {Duration.ofMillis(250)},
+                                     Duration.ofMillis(10), Duration.ofSeconds(10));
+      MetricsManager.createTimer("cli_histogram_test_duration_seconds", "Timer for the histogram test", "command", "test")
+        .record(Duration.ofMillis(100));
+    } finally {
+      MetricsManager.configureTimers(false, null, null, null, null);
+    }
+
+    String scrape = MetricsManager.REGISTRY.scrape();
+    assertTrue(scrape.contains("cli_histogram_test_duration_seconds_bucket{command=\"test\",le=\"0.25\",} 1.0"));
+    assertTrue(scrape.contains("cli_histogram_test_duration_seconds{command=\"test\",quantile=\"0.99\",}"));
+    assertTrue(scrape.contains("cli_histogram_test_duration_seconds_bucket{command=\"test\",le=\"0.01\",}"));
+    // The default maximum is 30 seconds
+    assertFalse(scrape.contains("cli_histogram_test_duration_seconds_bucket{command=\"test\",le=\"30.0\",}"));
+  }
+
+  private static HttpURLConnection open(String accept, String acceptEncoding) throws IOException {
+    URL url = new URL("http://localhost:" + MetricsManager.getPort() + "/metrics");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    if (accept != null) {
+      connection.setRequestProperty("Accept", accept);
+    }
+    if (acceptEncoding != null) {
+      connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+    }
+    assertEquals(200, connection.getResponseCode());
+    return connection;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    try (InputStream stream = in) {
+      return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
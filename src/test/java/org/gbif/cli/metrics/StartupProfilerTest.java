@@ -0,0 +1,36 @@
+package org.gbif.cli.metrics;
+
+import org.gbif.cli.TestBaseCommand;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupProfilerTest {
+
+  @Test
+  public void testReport() {
+    StartupProfiler.reset();
+    String result = StartupProfiler.time("test-phase", () -> "done");
+    assertEquals("done", result);
+    StartupProfiler.report();
+
+    Timer timer = MetricsManager.REGISTRY.find("cli_startup_phase_duration_seconds").tag("phase", "test-phase").timer();
+    assertNotNull(timer);
+    assertTrue(timer.count() > 0);
+  }
+
+  @Test
+  public void testBaseCommandPhases() {
+    TestBaseCommand command = new TestBaseCommand();
+    command.run("--foo", "CLI", "--conf", "target/test-classes/configtest.yaml", "--startup-report");
+
+    for (String phase : new String[] {"generic-parameters", "configuration-files", "configure-logging", "validation"}) {
+      assertNotNull(MetricsManager.REGISTRY.find("cli_startup_phase_duration_seconds").tag("phase", phase).timer(),
+                    "Missing timer for phase " + phase);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package org.gbif.cli.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.Counter;
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingServiceTest {
+
+  private static class TestBatchingService extends BatchingService<String> {
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private TestBatchingService(BatchingConfiguration configuration) {
+      super(configuration);
+    }
+
+    @Override
+    protected void flush(List<String> batch) {
+      batches.add(List.copyOf(batch));
+    }
+
+    @Override
+    protected long sizeOf(String item) {
+      return item.length();
+    }
+
+    @Override
+    protected String serviceName() {
+      return "TestBatchingService";
+    }
+  }
+
+  private static BatchingConfiguration configuration(int maxBatchSize, long maxBatchBytes, long maxLatencyMillis) {
+    BatchingConfiguration configuration = new BatchingConfiguration();
+    configuration.maxBatchSize = maxBatchSize;
+    configuration.maxBatchBytes = maxBatchBytes;
+    configuration.maxLatencyMillis = maxLatencyMillis;
+    configuration.maxInFlightFlushes = 2;
+    return configuration;
+  }
+
+  @Test
+  public void testSizeAndShutdown() throws Exception {
+    TestBatchingService service = new TestBatchingService(configuration(3, 10, 60_000));
+    double shutdownFlushes = shutdownFlushes();
+    service.startAsync().awaitRunning();
+
+    for (String item : new String[] {"a", "b", "c", "dddddd", "eeeeee", "f"}) {
+      assertTrue(service.add(item));
+    }
+    service.stopAccepting();
+    assertFalse(service.add("g"));
+    assertTrue(service.awaitDrained(5, TimeUnit.SECONDS));
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(3, service.batches.size());
+    assertTrue(service.batches.contains(List.of("a", "b", "c")));
+    assertTrue(service.batches.contains(List.of("dddddd", "eeeeee")));
+    assertTrue(service.batches.contains(List.of("f")));
+    assertEquals(1, shutdownFlushes() - shutdownFlushes);
+  }
+
+  private static double shutdownFlushes() {
+    return MetricsManager.REGISTRY.find("cli_batch_flushes_total").tag("trigger", "shutdown").counters().stream()
+      .mapToDouble(Counter::count).sum();
+  }
+
+  @Test
+  public void testLatency() throws Exception {
+    TestBatchingService service = new TestBatchingService(configuration(100, 0, 50));
+    service.startAsync().awaitRunning();
+
+    service.add("a");
+    service.add("b");
+    long start = System.nanoTime();
+    while (service.batches.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+      Thread.sleep(10);
+    }
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(List.of(List.of("a", "b")), service.batches);
+  }
+
+  @Test
+  public void testPutBack() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    BatchingConfiguration configuration = configuration(2, 0, 60_000);
+    configuration.maxInFlightFlushes = 1;
+    TestBatchingService service = new TestBatchingService(configuration) {
+      @Override
+      protected void flush(List<String> batch) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.flush(batch);
+      }
+    };
+    service.startAsync().awaitRunning();
+
+    // Occupies the only flush
+    service.add("a");
+    service.add("b");
+
+    Thread adder = new Thread(() -> {
+      try {
+        service.add("c");
+        service.add("d");
+      } catch (InterruptedException e) {
+        // Expected, the complete batch is put back
+      }
+    });
+    adder.start();
+    Thread.sleep(100);
+    adder.interrupt();
+    adder.join();
+
+    // The put back batch is still complete and flushed without waiting for the latency or further items
+    release.countDown();
+    long start = System.nanoTime();
+    while (service.batches.size() < 2 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+      Thread.sleep(10);
+    }
+    assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), service.batches);
+    service.stopAsync().awaitTerminated();
+  }
+
+  @Test
+  public void testDrainWhileFlushesAreBusy() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    BatchingConfiguration configuration = configuration(2, 0, 50);
+    configuration.maxInFlightFlushes = 1;
+    TestBatchingService service = new TestBatchingService(configuration) {
+      @Override
+      protected void flush(List<String> batch) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.flush(batch);
+      }
+
+      @Override
+      protected String serviceName() {
+        return "BusyBatchingService";
+      }
+    };
+    service.startAsync().awaitRunning();
+
+    // Occupies the only flush, the latency flush of the next batch then waits for it
+    service.add("a");
+    service.add("b");
+    service.add("c");
+    Thread.sleep(150);
+
+    service.stopAccepting();
+    AtomicBoolean drained = new AtomicBoolean();
+    Thread drainer = new Thread(() -> {
+      try {
+        drained.set(service.awaitDrained(5, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    drainer.start();
+    Thread.sleep(50);
+    // Interrupts the waiting latency flush like shutting down the timer does, so it puts its batch back while draining
+    Thread.getAllStackTraces().keySet().stream()
+      .filter(thread -> thread.getName().startsWith("BusyBatchingService-timer"))
+      .forEach(Thread::interrupt);
+    Thread.sleep(50);
+    release.countDown();
+    drainer.join();
+
+    assertTrue(drained.get());
+    assertEquals(List.of(List.of("a", "b"), List.of("c")), service.batches);
+    service.stopAsync().awaitTerminated();
+  }
+}
@@ -0,0 +1,35 @@
+package org.gbif.cli.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigurationWatcherTest {
+
+  @TempDir
+  Path dir;
+
+  @Test
+  public void testChangeIsNoticed() throws Exception {
+    Path file = dir.resolve("config.yaml");
+    Files.write(file, "foo: one".getBytes(StandardCharsets.UTF_8));
+
+    CountDownLatch changed = new CountDownLatch(1);
+    ConfigurationWatcher watcher = new ConfigurationWatcher(Collections.singletonList(file), changed::countDown, 50);
+    watcher.startAsync().awaitRunning();
+    try {
+      Files.write(file, "foo: something else".getBytes(StandardCharsets.UTF_8));
+      assertTrue(changed.await(30, TimeUnit.SECONDS));
+    } finally {
+      watcher.stopAsync().awaitTerminated();
+    }
+  }
+}
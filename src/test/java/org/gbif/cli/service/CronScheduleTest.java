@@ -0,0 +1,60 @@
+package org.gbif.cli.service;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CronScheduleTest {
+
+  private static final ZonedDateTime NOW = ZonedDateTime.of(2024, 3, 15, 10, 17, 30, 500, ZoneOffset.UTC);
+
+  private static ZonedDateTime at(int month, int day, int hour, int minute, int second) {
+    return ZonedDateTime.of(2024, month, day, hour, minute, second, 0, ZoneOffset.UTC);
+  }
+
+  @Test
+  public void testFields() {
+    assertEquals(at(3, 15, 10, 18, 0), Schedule.cron("* * * * *").next(NOW));
+    assertEquals(at(3, 15, 10, 30, 0), Schedule.cron("*/15 * * * *").next(NOW));
+    assertEquals(at(3, 15, 10, 17, 40), Schedule.cron("*/10 * * * * *").next(NOW));
+    assertEquals(at(3, 16, 2, 0, 0), Schedule.cron("0 2 * * *").next(NOW));
+    assertEquals(at(3, 15, 12, 5, 0), Schedule.cron("5 9-17/3 * * *").next(NOW));
+    assertEquals(at(4, 1, 0, 0, 0), Schedule.cron("0 0 1 apr,oct ?").next(NOW));
+    // Exact matches are returned as is
+    assertEquals(at(3, 16, 2, 0, 0), Schedule.cron("0 2 * * *").next(at(3, 16, 2, 0, 0)));
+  }
+
+  @Test
+  public void testDaysOfWeek() {
+    // 15th of March 2024 is a Friday
+    assertEquals(at(3, 18, 0, 0, 0), Schedule.cron("0 0 * * MON-FRI").next(NOW));
+    assertEquals(at(3, 17, 0, 0, 0), Schedule.cron("0 0 * * 0").next(NOW));
+    assertEquals(at(3, 17, 0, 0, 0), Schedule.cron("0 0 * * 7").next(NOW));
+    // Either the day of the month or the day of the week if both are restricted
+    assertEquals(at(3, 16, 0, 0, 0), Schedule.cron("0 0 20 * SAT").next(NOW));
+    assertEquals(at(2, 29, 0, 0, 0),
+                 Schedule.cron("0 0 29 2 *").next(ZonedDateTime.of(2023, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC)));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> Schedule.cron("* * * *"));
+    assertThrows(IllegalArgumentException.class, () -> Schedule.cron("60 * * * *"));
+    assertThrows(IllegalArgumentException.class, () -> Schedule.cron("* * * FOO *"));
+    assertThrows(IllegalArgumentException.class, () -> Schedule.cron("* 5-2 * * *"));
+    assertThrows(IllegalStateException.class, () -> Schedule.cron("0 0 30 2 *").next(NOW));
+  }
+
+  @Test
+  public void testFixedRate() {
+    Schedule schedule = new FixedRateSchedule(at(3, 15, 10, 0, 0).toInstant(), Duration.ofSeconds(45));
+    assertEquals(at(3, 15, 10, 18, 0), schedule.next(NOW));
+    assertEquals(at(3, 15, 9, 0, 0), schedule.next(at(3, 15, 8, 59, 40)));
+    assertEquals(at(3, 15, 10, 0, 0), schedule.next(at(3, 15, 10, 0, 0)));
+  }
+}
@@ -0,0 +1,70 @@
+package org.gbif.cli.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileLockLeaderElectionTest {
+
+  @Test
+  public void testLeadership(@TempDir Path tmp) {
+    Path lockFile = tmp.resolve("locks/scheduler.lock");
+    ZonedDateTime slot = ZonedDateTime.now();
+
+    try (FileLockLeaderElection first = new FileLockLeaderElection(lockFile, "election");
+         FileLockLeaderElection second = new FileLockLeaderElection(lockFile, "election")) {
+      assertTrue(first.claim(slot));
+      assertTrue(first.isLeader());
+      assertFalse(second.claim(slot));
+      assertFalse(second.isLeader());
+
+      // The new leader doesn't run the slot the previous one already ran
+      first.close();
+      assertFalse(second.claim(slot));
+      assertTrue(second.isLeader());
+      assertTrue(second.claim(slot.plusMinutes(1)));
+      assertFalse(first.tryAcquire());
+    }
+  }
+
+  @Test
+  public void testReplacedLockFile(@TempDir Path tmp) throws Exception {
+    Path lockFile = tmp.resolve("scheduler.lock");
+    try (FileLockLeaderElection election = new FileLockLeaderElection(lockFile, "replaced")) {
+      assertTrue(election.tryAcquire());
+      Files.delete(lockFile);
+      Files.createFile(lockFile);
+
+      assertTrue(election.tryAcquire());
+      assertEquals(1, MetricsManager.REGISTRY.get("cli_scheduled_leadership_lost_total").tag("service", "replaced")
+        .counter().count());
+      assertEquals(2, MetricsManager.REGISTRY.get("cli_scheduled_leadership_acquired_total").tag("service", "replaced")
+        .counter().count());
+    }
+  }
+
+  @Test
+  public void testGaugeOfRestartedElection(@TempDir Path tmp) {
+    Path lockFile = tmp.resolve("restarted.lock");
+    try (FileLockLeaderElection first = new FileLockLeaderElection(lockFile, "restarted")) {
+      assertTrue(first.tryAcquire());
+    }
+    try (FileLockLeaderElection restarted = new FileLockLeaderElection(lockFile, "restarted")) {
+      assertEquals(0, gauge("restarted"));
+      assertTrue(restarted.tryAcquire());
+      assertEquals(1, gauge("restarted"));
+    }
+  }
+
+  private static double gauge(String name) {
+    return MetricsManager.REGISTRY.get("cli_scheduled_leader").tag("service", name).gauge().value();
+  }
+}
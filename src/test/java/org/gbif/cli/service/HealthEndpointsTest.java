@@ -0,0 +1,93 @@
+package org.gbif.cli.service;
+
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HealthEndpointsTest {
+
+  @BeforeEach
+  public void start() {
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ZERO);
+  }
+
+  @AfterEach
+  public void stop() {
+    MetricsManager.stopMetricsServer();
+  }
+
+  @Test
+  public void testReadiness() throws Exception {
+    AtomicBoolean warm = new AtomicBoolean();
+    Map<String, ReadinessCheck> checks = new LinkedHashMap<>();
+    checks.put("warm", warm::get);
+    Service service = new TestService(false);
+    new HealthEndpoints(service, checks).register();
+
+    assertEquals(200, status("/health/live"));
+    assertEquals(503, status("/health/ready"));
+
+    service.startAsync().awaitRunning();
+    assertEquals(503, status("/health/ready"));
+    warm.set(true);
+    assertEquals(200, status("/health/ready"));
+
+    service.stopAsync().awaitTerminated();
+    assertEquals(503, status("/health/ready"));
+  }
+
+  @Test
+  public void testLiveness() throws Exception {
+    Map<String, ReadinessCheck> checks = new LinkedHashMap<>();
+    checks.put("failing", () -> {
+      throw new IllegalStateException("Unreachable");
+    });
+    Service service = new TestService(true);
+    new HealthEndpoints(service, checks).register();
+
+    assertThrows(IllegalStateException.class, () -> service.startAsync().awaitRunning());
+    assertEquals(503, status("/health/live"));
+    assertEquals(503, status("/health/ready"));
+  }
+
+  private static int status(String path) throws IOException {
+    return ((HttpURLConnection) new URL("http://localhost:" + MetricsManager.getPort() + path).openConnection())
+      .getResponseCode();
+  }
+
+  private static class TestService extends AbstractIdleService {
+
+    private final boolean fail;
+
+    private TestService(boolean fail) {
+      this.fail = fail;
+    }
+
+    @Override
+    protected void startUp() {
+      if (fail) {
+        throw new IllegalStateException("Failed to start");
+      }
+    }
+
+    @Override
+    protected void shutDown() {
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.gbif.cli.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelWorkerServiceTest {
+
+  private static class TestWorkerService extends ParallelWorkerService<Integer> {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> processed = new CopyOnWriteArrayList<>();
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private TestWorkerService(int threads, int queueSize, Backpressure backpressure) {
+      super(configuration(threads, queueSize, backpressure));
+    }
+
+    @Override
+    protected void process(Integer item) throws Exception {
+      threads.add(Thread.currentThread().getName());
+      release.await();
+      if (item < 0) {
+        throw new IllegalArgumentException("Negative item");
+      }
+      processed.add(item);
+    }
+
+    @Override
+    protected void onFailure(Integer item, Exception exception) {
+      failed.incrementAndGet();
+    }
+
+    @Override
+    protected String serviceName() {
+      return "TestWorkerService";
+    }
+  }
+
+  private static WorkerPoolConfiguration configuration(int threads, int queueSize, Backpressure backpressure) {
+    WorkerPoolConfiguration configuration = new WorkerPoolConfiguration();
+    configuration.threads = threads;
+    configuration.queueSize = queueSize;
+    configuration.backpressure = backpressure;
+    configuration.virtualThreads = true;
+    return configuration;
+  }
+
+  @Test
+  public void testRejectAndDrain() throws Exception {
+    TestWorkerService service = new TestWorkerService(2, 2, Backpressure.REJECT);
+    service.startAsync().awaitRunning();
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(service.submit(i == 3 ? -1 : i));
+    }
+    assertFalse(service.submit(4));
+    assertEquals(2.0, MetricsManager.REGISTRY.get("cli_worker_queue_depth").tag("service", "TestWorkerService")
+      .gauge().value());
+    assertEquals(1.0, MetricsManager.REGISTRY.get("cli_worker_utilization").tag("service", "TestWorkerService")
+      .gauge().value());
+
+    service.stopAccepting();
+    assertFalse(service.submit(5));
+    service.release.countDown();
+    assertTrue(service.awaitDrained(5, TimeUnit.SECONDS));
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(3, service.processed.size());
+    assertEquals(1, service.failed.get());
+  }
+
+  @Test
+  public void testCallerRuns() throws Exception {
+    TestWorkerService service = new TestWorkerService(1, 0, Backpressure.CALLER_RUNS);
+    service.startAsync().awaitRunning();
+    service.release.countDown();
+
+    for (int i = 0; i < 20; i++) {
+      assertTrue(service.submit(i));
+    }
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(20, service.processed.size());
+    assertTrue(service.threads.contains(Thread.currentThread().getName()));
+  }
+
+  @Test
+  public void testCallerRunsWhileDraining() throws Exception {
+    TestWorkerService service = new TestWorkerService(1, 0, Backpressure.CALLER_RUNS);
+    service.startAsync().awaitRunning();
+    service.release.countDown();
+
+    // A producer that passed the accepting check just before the service stopped accepting
+    assertTrue(service.awaitDrained(5, TimeUnit.SECONDS));
+    assertFalse(service.submit(1));
+    service.stopAsync().awaitTerminated();
+
+    assertTrue(service.processed.isEmpty());
+  }
+
+  @Test
+  public void testGaugesOfLatestService() throws Exception {
+    TestWorkerService first = new TestWorkerService(1, 5, Backpressure.BLOCK);
+    first.startAsync().awaitRunning();
+    first.release.countDown();
+    first.stopAsync().awaitTerminated();
+
+    TestWorkerService second = new TestWorkerService(1, 5, Backpressure.BLOCK);
+    second.startAsync().awaitRunning();
+    for (int i = 0; i < 3; i++) {
+      assertTrue(second.submit(i));
+    }
+    // One item is being processed, the others are queued in the pool of the second service
+    Thread.sleep(100);
+    assertEquals(2.0, MetricsManager.REGISTRY.get("cli_worker_queue_depth").tag("service", "TestWorkerService")
+      .gauge().value());
+    second.release.countDown();
+    second.stopAsync().awaitTerminated();
+  }
+}
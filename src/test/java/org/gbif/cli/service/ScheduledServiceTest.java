@@ -0,0 +1,252 @@
+package org.gbif.cli.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.gbif.cli.metrics.MetricsManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScheduledServiceTest {
+
+  private static class TestService extends ScheduledTaskService {
+    private final OverlapPolicy overlapPolicy;
+    private final long runMillis;
+    private final AtomicInteger runs = new AtomicInteger();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+    private final CountDownLatch firstRuns = new CountDownLatch(3);
+    private volatile boolean destroyed;
+
+    private TestService(OverlapPolicy overlapPolicy, long runMillis) {
+      this.overlapPolicy = overlapPolicy;
+      this.runMillis = runMillis;
+    }
+
+    @Override
+    protected void scheduledRun(ZonedDateTime scheduledTime) {
+      maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+      runs.incrementAndGet();
+      firstRuns.countDown();
+      try {
+        Thread.sleep(runMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inProgress.decrementAndGet();
+      }
+      throw new IllegalStateException("Failing runs don't cancel the schedule");
+    }
+
+    @Override
+    protected void scheduledDestroy() {
+      destroyed = inProgress.get() == 0;
+    }
+
+    @Override
+    protected Schedule getSchedule() {
+      return Schedule.every(Duration.ofMillis(20));
+    }
+
+    @Override
+    protected OverlapPolicy getOverlapPolicy() {
+      return overlapPolicy;
+    }
+
+    @Override
+    protected boolean useVirtualThreads() {
+      return true;
+    }
+  }
+
+  private static class DailyService extends ScheduledTaskService {
+    private final Schedule schedule;
+    private final Path stateFile;
+    private final CatchUpPolicy catchUpPolicy;
+    private final List<ZonedDateTime> runs = new CopyOnWriteArrayList<>();
+
+    private DailyService(Schedule schedule, Path stateFile, CatchUpPolicy catchUpPolicy) {
+      this.schedule = schedule;
+      this.stateFile = stateFile;
+      this.catchUpPolicy = catchUpPolicy;
+    }
+
+    @Override
+    protected void scheduledRun(ZonedDateTime scheduledTime) {
+      runs.add(scheduledTime);
+    }
+
+    @Override
+    protected void scheduledDestroy() {
+    }
+
+    @Override
+    protected Schedule getSchedule() {
+      return schedule;
+    }
+
+    @Override
+    protected Path getStateFile() {
+      return stateFile;
+    }
+
+    @Override
+    protected CatchUpPolicy getCatchUpPolicy() {
+      return catchUpPolicy;
+    }
+  }
+
+  private static class LegacyService extends ScheduledService {
+    private final LocalTime timeStart;
+    private final int intervalInMinutes;
+    private final Path stateFile;
+    private final List<ZonedDateTime> runs = new CopyOnWriteArrayList<>();
+
+    private LegacyService(LocalTime timeStart) {
+      this(timeStart, 60, null);
+    }
+
+    private LegacyService(LocalTime timeStart, int intervalInMinutes, Path stateFile) {
+      this.timeStart = timeStart;
+      this.intervalInMinutes = intervalInMinutes;
+      this.stateFile = stateFile;
+    }
+
+    @Override
+    protected void scheduledRun() {
+    }
+
+    @Override
+    protected void scheduledRun(ZonedDateTime scheduledTime) {
+      runs.add(scheduledTime);
+    }
+
+    @Override
+    protected void scheduledDestroy() {
+    }
+
+    @Override
+    protected LocalTime getTimeStart() {
+      return timeStart;
+    }
+
+    @Override
+    protected int getIntervalInMinutes() {
+      return intervalInMinutes;
+    }
+
+    @Override
+    protected Path getStateFile() {
+      return stateFile;
+    }
+
+    @Override
+    protected CatchUpPolicy getCatchUpPolicy() {
+      return CatchUpPolicy.BACKFILL;
+    }
+  }
+
+  @Test
+  public void testLegacyFirstRun() {
+    ZonedDateTime now = ZonedDateTime.now();
+    // A start time that has passed means the first run is at that time tomorrow, not at the next hour
+    Schedule schedule = new LegacyService(now.minusMinutes(1).toLocalTime()).getSchedule();
+    ZonedDateTime first = schedule.next(now);
+    assertTrue(Math.abs(Duration.between(now, first).minus(Duration.ofHours(24).minusMinutes(1)).toSeconds()) < 5,
+               "Unexpected first run " + first);
+    assertEquals(first.plusHours(1), schedule.next(first.plusNanos(1)));
+
+    schedule = new LegacyService(null).getSchedule();
+    assertTrue(Duration.between(now, schedule.next(now)).toSeconds() < 5);
+  }
+
+  @Test
+  public void testLegacyCatchUp(@TempDir Path tmp) throws Exception {
+    ZonedDateTime todaysSlot = ZonedDateTime.now().minusHours(1);
+    // The last successful run was the day before yesterday, yesterday's and today's runs were missed
+    ZonedDateTime lastRun = todaysSlot.minus(Duration.ofDays(2));
+    Path stateFile = tmp.resolve("legacy.state");
+    Files.write(stateFile, ("lastSuccessfulRun=" + lastRun).getBytes());
+
+    LegacyService service = new LegacyService(todaysSlot.toLocalTime(), 24 * 60, stateFile);
+    service.startAsync().awaitRunning();
+    Thread.sleep(200);
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(List.of(lastRun.plus(Duration.ofDays(1)).toInstant(), todaysSlot.toInstant()),
+                 service.runs.stream().map(ZonedDateTime::toInstant).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testCatchUp(@TempDir Path tmp) throws Exception {
+    ZonedDateTime lastRun = ZonedDateTime.now().minusDays(3).minusHours(1);
+    Schedule schedule = new FixedRateSchedule(lastRun.toInstant(), Duration.ofDays(1));
+    Path stateFile = tmp.resolve("daily.state");
+    Files.write(stateFile, ("lastSuccessfulRun=" + lastRun).getBytes());
+
+    assertEquals(0, runMissed(schedule, stateFile, CatchUpPolicy.SKIP).size());
+    assertEquals(List.of(lastRun.plusDays(3)), runMissed(schedule, stateFile, CatchUpPolicy.RUN_ONCE));
+
+    // The state now records the run of the latest slot, so nothing was missed anymore
+    Files.write(stateFile, ("lastSuccessfulRun=" + lastRun).getBytes());
+    assertEquals(List.of(lastRun.plusDays(1), lastRun.plusDays(2), lastRun.plusDays(3)),
+                 runMissed(schedule, stateFile, CatchUpPolicy.BACKFILL));
+    assertEquals(0, runMissed(schedule, stateFile, CatchUpPolicy.BACKFILL).size());
+  }
+
+  private static List<ZonedDateTime> runMissed(Schedule schedule, Path stateFile, CatchUpPolicy policy)
+    throws InterruptedException {
+    DailyService service = new DailyService(schedule, stateFile, policy);
+    service.startAsync().awaitRunning();
+    Thread.sleep(200);
+    service.stopAsync().awaitTerminated();
+    return service.runs;
+  }
+
+  @Test
+  public void testSkip() throws Exception {
+    TestService service = new TestService(OverlapPolicy.skip(), 50);
+    service.startAsync().awaitRunning();
+    assertTrue(service.firstRuns.await(5, TimeUnit.SECONDS));
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(1, service.maxInProgress.get());
+    assertTrue(service.destroyed);
+    assertTrue(counter("cli_scheduled_run_skipped_total") > 0);
+    assertTrue(counter("cli_scheduled_run_overruns_total") > 0);
+    assertTrue(counter("cli_scheduled_run_failures_total") >= 3);
+    assertTrue(MetricsManager.REGISTRY.get("cli_scheduled_run_duration_seconds").tag("service", "TestService").timer()
+                 .count() >= 3);
+  }
+
+  private static double counter(String name) {
+    return MetricsManager.REGISTRY.get(name).tag("service", "TestService").counter().count();
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    TestService service = new TestService(OverlapPolicy.concurrent(3), 100);
+    service.startAsync().awaitRunning();
+    assertTrue(service.firstRuns.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    service.stopAsync().awaitTerminated();
+
+    assertEquals(3, service.maxInProgress.get());
+    assertTrue(service.destroyed);
+    int runs = service.runs.get();
+    Thread.sleep(100);
+    assertEquals(runs, service.runs.get());
+  }
+}
@@ -1,18 +1,52 @@
 package org.gbif.cli.service;
 
+import org.gbif.cli.metrics.MetricsManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@Disabled
 public class ServiceCommandTest {
 
+  private final ListAppender<ILoggingEvent> log = new ListAppender<>();
+
+  @BeforeEach
+  public void start() {
+    MetricsManager.startMetricsServer(new InetSocketAddress("localhost", 0), null, Duration.ZERO);
+    log.start();
+    ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ServiceCommand.class)).addAppender(log);
+  }
+
+  @AfterEach
+  public void stop() {
+    ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ServiceCommand.class)).detachAppender(log);
+    MetricsManager.stopMetricsServer();
+  }
+
   @SuppressWarnings("UnstableApiUsage")
   public static class TestService extends ServiceCommand {
     private static final Logger LOG = LoggerFactory.getLogger(TestService.class);
@@ -59,6 +93,7 @@ public class ServiceCommandTest {
     }
   }
 
+  @Disabled("Blocks until the JVM shuts down")
   @Test
   public void testRun() throws Exception {
     TestService command = new TestService();
@@ -74,6 +109,7 @@ public class ServiceCommandTest {
     assertTrue(command.isRunning());
   }
 
+  @Disabled("Blocks until the JVM shuts down")
   @Test
   public void testRunException() throws Exception {
     TestService command = new TestService();
@@ -90,4 +126,145 @@ public class ServiceCommandTest {
     // service still running
     assertTrue(command.isRunning());
   }
+
+  @Test
+  public void testWarmup() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    WarmupCommand command = new WarmupCommand(budget -> release.await());
+    long warmups = MetricsManager.REGISTRY.get("cli_service_warmup_duration_seconds").timer().count();
+    Thread thread = runInBackground(command, "--metrics-enabled");
+
+    command.getService().awaitRunning(5, TimeUnit.SECONDS);
+    assertEquals(503, status("/health/ready"));
+    assertTrue(body("/health/ready").contains("warmup DOWN"));
+    assertFalse(messages().contains("Service started"));
+
+    release.countDown();
+    awaitReady();
+    List<String> messages = messages();
+    assertTrue(messages.indexOf("Service started") > messages.indexOf("Service warmed up with {} iterations in {} ms"));
+    assertEquals(warmups + 1, MetricsManager.REGISTRY.get("cli_service_warmup_duration_seconds").timer().count());
+
+    command.getService().stopAsync();
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+  }
+
+  @Test
+  public void testFailingWarmup() throws Exception {
+    WarmupCommand command = new WarmupCommand(budget -> {
+      throw new IllegalStateException("Cache unreachable");
+    });
+    Thread thread = runInBackground(command, "--metrics-enabled");
+
+    awaitReady();
+    assertTrue(messages().contains("Service failed to warm up, continuing cold"));
+    assertTrue(command.getService().isRunning());
+
+    command.getService().stopAsync();
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+  }
+
+  @Test
+  public void testWarmupDeadline() throws Exception {
+    AtomicBoolean interrupted = new AtomicBoolean();
+    WarmupCommand command = new WarmupCommand(budget -> {
+      try {
+        // Ignores the budget
+        Thread.sleep(Long.MAX_VALUE);
+      } catch (InterruptedException e) {
+        interrupted.set(true);
+      }
+    });
+    long start = System.nanoTime();
+    Thread thread = runInBackground(command, "--metrics-enabled", "--warmup-seconds", "1");
+
+    awaitReady();
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    assertTrue(messages().contains("Service did not warm up within {} s, continuing cold"));
+    assertTrue(messages().indexOf("Service started") > 0);
+    Thread.sleep(100);
+    assertTrue(interrupted.get());
+
+    command.getService().stopAsync();
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+  }
+
+  private static Thread runInBackground(ServiceCommand command, String... arguments) {
+    Thread thread = new Thread(() -> command.run(arguments), "service-command");
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private List<String> messages() {
+    synchronized (log.list) {
+      return log.list.stream().map(ILoggingEvent::getMessage).collect(Collectors.toList());
+    }
+  }
+
+  private static void awaitReady() throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (status("/health/ready") != 200) {
+      assertTrue(System.nanoTime() < deadline, "Service did not get ready");
+      Thread.sleep(20);
+    }
+  }
+
+  private static HttpURLConnection open(String path) throws IOException {
+    return (HttpURLConnection) new URL("http://localhost:" + MetricsManager.getPort() + path).openConnection();
+  }
+
+  private static int status(String path) throws IOException {
+    return open(path).getResponseCode();
+  }
+
+  private static String body(String path) throws IOException {
+    HttpURLConnection connection = open(path);
+    connection.getResponseCode();
+    try (InputStream in = connection.getErrorStream() == null ? connection.getInputStream()
+      : connection.getErrorStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Runs an idle service which is warmed up by the given warmup.
+   */
+  private static class WarmupCommand extends ServiceCommand {
+
+    private final Service service = new AbstractIdleService() {
+      @Override
+      protected void startUp() {
+      }
+
+      @Override
+      protected void shutDown() {
+      }
+    };
+    private final Warmup warmup;
+
+    private WarmupCommand(Warmup warmup) {
+      // Not named test, that would load logback-test.xml and reset the logging context
+      super("warmup");
+      this.warmup = warmup;
+    }
+
+    @Override
+    protected Service getService() {
+      return service;
+    }
+
+    @Override
+    protected Warmup getWarmup(Service service) {
+      return warmup;
+    }
+
+    @Override
+    protected Object getConfigurationObject() {
+      return new Object();
+    }
+  }
 }
@@ -0,0 +1,135 @@
+package org.gbif.cli.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Service;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServiceGroupTest {
+
+  private static class RecordingService extends AbstractIdleService {
+    private final String name;
+    private final List<String> events;
+    private final boolean fail;
+    private final long startMillis;
+
+    private RecordingService(String name, List<String> events, boolean fail) {
+      this(name, events, fail, 50);
+    }
+
+    private RecordingService(String name, List<String> events, boolean fail, long startMillis) {
+      this.name = name;
+      this.events = events;
+      this.fail = fail;
+      this.startMillis = startMillis;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+      Thread.sleep(startMillis);
+      if (fail) {
+        throw new IllegalStateException("Failing " + name);
+      }
+      events.add("start " + name);
+    }
+
+    @Override
+    protected void shutDown() {
+      events.add("stop " + name);
+    }
+  }
+
+  @Test
+  public void testDependencyOrder() throws Exception {
+    List<String> events = new CopyOnWriteArrayList<>();
+    ServiceGroup group = ServiceGroup.builder()
+      .add("a", new RecordingService("a", events, false))
+      .add("b", new RecordingService("b", events, false), "a")
+      .add("c", new RecordingService("c", events, false))
+      .build();
+
+    group.startAsync().awaitRunning(10, TimeUnit.SECONDS);
+    assertEquals(3, events.size());
+    assertEquals("start b", events.get(2));
+
+    group.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+    assertEquals("stop b", events.get(3));
+    for (Service service : group.getServices().values()) {
+      assertEquals(Service.State.TERMINATED, service.state());
+    }
+  }
+
+  @Test
+  public void testIndependentChains() throws Exception {
+    List<String> events = new CopyOnWriteArrayList<>();
+    ServiceGroup group = ServiceGroup.builder()
+      .add("slow", new RecordingService("slow", events, false, 500))
+      .add("fast", new RecordingService("fast", events, false, 10))
+      .add("after-slow", new RecordingService("after-slow", events, false, 10), "slow")
+      .add("after-fast", new RecordingService("after-fast", events, false, 10), "fast")
+      .build();
+
+    group.startAsync().awaitRunning(10, TimeUnit.SECONDS);
+    // A service only waits for its own dependencies
+    assertTrue(events.indexOf("start after-fast") < events.indexOf("start slow"), events.toString());
+    assertTrue(events.indexOf("start slow") < events.indexOf("start after-slow"), events.toString());
+
+    group.stopAsync().awaitTerminated(10, TimeUnit.SECONDS);
+    assertTrue(events.indexOf("stop after-slow") < events.indexOf("stop slow"), events.toString());
+    assertTrue(events.indexOf("stop after-fast") < events.indexOf("stop fast"), events.toString());
+  }
+
+  @Test
+  public void testFailure() {
+    List<String> events = new CopyOnWriteArrayList<>();
+    ServiceGroup group = ServiceGroup.builder()
+      .add("a", new RecordingService("a", events, false))
+      .add("b", new RecordingService("b", events, true), "a")
+      .build();
+
+    group.startAsync();
+    assertThrows(IllegalStateException.class, () -> group.awaitRunning(10, TimeUnit.SECONDS));
+    assertEquals(Service.State.FAILED, group.state());
+    assertTrue(events.contains("stop a"));
+  }
+
+  @Test
+  public void testMemberTerminatingOnItsOwn() throws Exception {
+    List<String> events = new CopyOnWriteArrayList<>();
+    CountDownLatch finish = new CountDownLatch(1);
+    ServiceGroup group = ServiceGroup.builder()
+      .add("source", new AbstractExecutionThreadService() {
+        @Override
+        protected void run() throws Exception {
+          finish.await();
+        }
+      })
+      .add("consumer", new RecordingService("consumer", events, false), "source")
+      .build();
+
+    group.startAsync().awaitRunning(10, TimeUnit.SECONDS);
+    finish.countDown();
+
+    // The group doesn't keep running without the source, its dependents are stopped as well
+    group.awaitTerminated(10, TimeUnit.SECONDS);
+    assertTrue(events.contains("stop consumer"));
+    for (Service service : group.getServices().values()) {
+      assertEquals(Service.State.TERMINATED, service.state());
+    }
+  }
+
+  @Test
+  public void testUnknownDependency() {
+    assertThrows(IllegalArgumentException.class,
+                 () -> ServiceGroup.builder().add("a", new RecordingService("a", null, false), "b"));
+  }
+}
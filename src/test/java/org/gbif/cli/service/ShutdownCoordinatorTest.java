@@ -0,0 +1,85 @@
+package org.gbif.cli.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Service;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShutdownCoordinatorTest {
+
+  private static class SlowService extends AbstractIdleService {
+    private final long stopMillis;
+
+    private SlowService(long stopMillis) {
+      this.stopMillis = stopMillis;
+    }
+
+    @Override
+    protected void startUp() {
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+      Thread.sleep(stopMillis);
+    }
+  }
+
+  private static class DrainableService extends SlowService implements Drainable {
+    private final CountDownLatch inFlight = new CountDownLatch(1);
+    private volatile boolean accepting = true;
+    private volatile boolean drainedBeforeStop;
+
+    private DrainableService() {
+      super(0);
+    }
+
+    @Override
+    public void stopAccepting() {
+      accepting = false;
+      inFlight.countDown();
+    }
+
+    @Override
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+      return inFlight.await(timeout, unit);
+    }
+
+    @Override
+    protected void shutDown() {
+      drainedBeforeStop = !accepting && inFlight.getCount() == 0;
+    }
+  }
+
+  @Test
+  public void testShutdown() {
+    Service service = new SlowService(0);
+    service.startAsync().awaitRunning();
+
+    assertTrue(new ShutdownCoordinator(service, 5, TimeUnit.SECONDS).shutdown());
+    assertEquals(Service.State.TERMINATED, service.state());
+  }
+
+  @Test
+  public void testDeadlineExceeded() {
+    Service service = new SlowService(2000);
+    service.startAsync().awaitRunning();
+
+    assertFalse(new ShutdownCoordinator(service, 100, TimeUnit.MILLISECONDS).shutdown());
+    assertEquals(Service.State.STOPPING, service.state());
+  }
+
+  @Test
+  public void testDrainBeforeStop() {
+    DrainableService service = new DrainableService();
+    service.startAsync().awaitRunning();
+
+    assertTrue(new ShutdownCoordinator(service, 5, TimeUnit.SECONDS).shutdown());
+    assertTrue(service.drainedBeforeStop);
+  }
+}
@@ -0,0 +1,42 @@
+package org.gbif.cli.service;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WarmupBudgetTest {
+
+  @Test
+  public void testIterations() {
+    WarmupBudget budget = new WarmupBudget(Duration.ofMinutes(1), 3);
+    int runs = 0;
+    while (budget.tryNext()) {
+      runs++;
+    }
+    assertEquals(3, runs);
+    assertEquals(3, budget.getIterations());
+    assertTrue(budget.isExhausted());
+  }
+
+  @Test
+  public void testTime() throws Exception {
+    WarmupBudget budget = new WarmupBudget(Duration.ofMillis(50), 0);
+    assertTrue(budget.tryNext());
+    assertFalse(budget.isExhausted());
+    Thread.sleep(60);
+    assertFalse(budget.tryNext());
+    assertEquals(Duration.ZERO, budget.getRemaining());
+    assertEquals(1, budget.getIterations());
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> new WarmupBudget(Duration.ofSeconds(-1), 0));
+    assertThrows(IllegalArgumentException.class, () -> new WarmupBudget(Duration.ofSeconds(1), -1));
+  }
+}